@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the repository URLs of jobs, done for every repository permission check.
+ * With {@code urls=mixed} an operation parses all ten URLs of the mix.
+ *
+ * {@code parse} measures the parser itself, {@code create} the lookup of
+ * recently parsed URLs which serves repeated checks of the same jobs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GitHubRepositoryNameBenchmark {
+
+    /**
+     * URLs as found in job configurations: mostly HTTPS and SSH, some with
+     * credentials, trailing slashes or GitHub Enterprise hosts, and a few
+     * which are not GitHub repositories at all.
+     */
+    private static final String[] MIXED = {
+        "https://github.com/jenkinsci/github-oauth-plugin.git",
+        "git@github.com:jenkinsci/github-oauth-plugin.git",
+        "https://github.com/jenkinsci/github-oauth-plugin",
+        "https://ci-bot@github.com/acme/widget.git",
+        "ssh://git@github.example.com/acme/widget.git",
+        "git://github.com/acme/widget.git",
+        "https://github.example.com/acme/widget/",
+        "git@github.example.com:globex/gadget",
+        "/var/lib/git/local.git",
+        "https://bitbucket.example.com/scm/project",
+    };
+
+    @Param({"https", "ssh", "mixed"})
+    public String urls;
+
+    private String[] input;
+
+    @Setup
+    public void setUp() {
+        if (urls.equals("https")) {
+            input = new String[] {"https://github.com/jenkinsci/github-oauth-plugin.git"};
+        } else if (urls.equals("ssh")) {
+            input = new String[] {"git@github.com:jenkinsci/github-oauth-plugin.git"};
+        } else {
+            input = MIXED;
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String url : input) {
+            blackhole.consume(GitHubRepositoryName.parse(url));
+        }
+    }
+
+    @Benchmark
+    public void create(Blackhole blackhole) {
+        for (String url : input) {
+            blackhole.consume(GitHubRepositoryName.create(url));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorization cache lookups of a logged in user, answered from warm caches,
+ * and the repository listing which fills them, answered by {@link GithubStub}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GithubAuthenticationTokenBenchmark {
+
+    private GithubStub github;
+    private GithubAuthenticationToken token;
+
+    @Setup
+    public void setUp() throws Exception {
+        github = new GithubStub();
+        GithubStub.installJenkins();
+        GithubAuthenticationToken.clearCaches();
+        token = new GithubAuthenticationToken(GithubStub.ACCESS_TOKEN, github.getApiUri());
+        token.myRepositories();
+        token.isPublicRepository("acme/website");
+        token.loadUser(GithubStub.USER);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        GithubAuthenticationToken.clearCaches();
+        GithubStub.uninstallJenkins();
+        github.stop();
+    }
+
+    @Benchmark
+    public boolean hasOrganizationPermission() {
+        return token.hasOrganizationPermission(GithubStub.USER, "globex");
+    }
+
+    @Benchmark
+    public boolean hasRepositoryPermission() {
+        return token.hasRepositoryPermission("globex/repo-250");
+    }
+
+    @Benchmark
+    public boolean hasRepositoryPermissionDenied() {
+        return token.hasRepositoryPermission("initech/repo-250");
+    }
+
+    @Benchmark
+    public boolean isPublicRepository() {
+        return token.isPublicRepository("acme/website");
+    }
+
+    @Benchmark
+    public Object loadUser() throws IOException {
+        return token.loadUser(GithubStub.USER);
+    }
+
+    /**
+     * What a cache miss of {@link #hasRepositoryPermission()} costs besides
+     * the network: the calls, their parsing and building the set of names.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Set<String> loadMyRepositoryNames() throws IOException {
+        return token.loadMyRepositoryNames();
+    }
+}
@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins;
+
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.GrantedAuthority;
+import org.acegisecurity.GrantedAuthorityImpl;
+import org.acegisecurity.providers.anonymous.AnonymousAuthenticationToken;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GithubRequireOrganizationMembershipACL#hasPermission} for each of its
+ * branches, with warm authorization caches:
+ * <ul>
+ *     <li>{@code admin} - an administrator, granted by name</li>
+ *     <li>{@code authenticated} - BUILD granted through organization membership</li>
+ *     <li>{@code anonymous} - READ denied to an anonymous user</li>
+ *     <li>{@code repository} - READ on a job whose private repository the user can access</li>
+ * </ul>
+ * {@code hasPermission} clears the shared decisions before each invocation so
+ * that it measures the branch; {@code hasPermissionCached} measures the lookup
+ * of a shared decision which every later check of the same question is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GithubRequireOrganizationMembershipACLBenchmark {
+
+    @Param({"admin", "authenticated", "anonymous", "repository"})
+    public String branch;
+
+    private GithubStub github;
+    private GithubRequireOrganizationMembershipACL acl;
+    private Authentication authentication;
+    private Permission permission;
+
+    @Setup
+    public void setUp() throws Exception {
+        github = new GithubStub();
+        GithubStub.installJenkins();
+        GithubAuthenticationToken.clearCaches();
+        GithubAuthenticationToken token =
+                new GithubAuthenticationToken(GithubStub.ACCESS_TOKEN, github.getApiUri());
+        authentication = token;
+        String admins = "admin";
+        if (branch.equals("admin")) {
+            admins = "admin," + GithubStub.USER;
+            permission = Jenkins.ADMINISTER;
+        } else if (branch.equals("authenticated")) {
+            permission = Item.BUILD;
+        } else if (branch.equals("anonymous")) {
+            authentication = new AnonymousAuthenticationToken("anonymous", "anonymous",
+                    new GrantedAuthority[] {new GrantedAuthorityImpl("anonymous")});
+            permission = Item.READ;
+        } else {
+            permission = Item.READ;
+        }
+        acl = new GithubRequireOrganizationMembershipACL(admins, "acme,globex",
+                false, true, false, false, true, false, false);
+        if (branch.equals("repository")) {
+            acl = acl.cloneForProject(project("https://github.com/globex/repo-250.git"));
+        }
+        if (!acl.hasPermission(authentication, permission) && !branch.equals("anonymous")) {
+            throw new IllegalStateException("expected " + permission.getId() + " to be granted");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        GithubAuthenticationToken.clearCaches();
+        GithubStub.uninstallJenkins();
+        github.stop();
+    }
+
+    private static AbstractProject project(String url) {
+        GitSCM scm = Mockito.mock(GitSCM.class);
+        Mockito.when(scm.getUserRemoteConfigs()).thenReturn(
+                Collections.singletonList(new UserRemoteConfig(url, null, null, null)));
+        AbstractProject project = Mockito.mock(AbstractProject.class);
+        Mockito.when(project.getScm()).thenReturn(scm);
+        Mockito.when(project.getName()).thenReturn("benchmark");
+        return project;
+    }
+
+    /**
+     * Forgets the decisions shared across requests, see {@link GithubDecisionCache}.
+     */
+    @State(Scope.Benchmark)
+    public static class Uncached {
+        @Setup(Level.Invocation)
+        public void clearDecisions() {
+            GithubDecisionCache.clear();
+        }
+    }
+
+    @Benchmark
+    public boolean hasPermission(Uncached uncached) {
+        return acl.hasPermission(authentication, permission);
+    }
+
+    @Benchmark
+    public boolean hasPermissionCached() {
+        return acl.hasPermission(authentication, permission);
+    }
+}
@@ -0,0 +1,149 @@
+package org.jenkinsci.plugins;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import jenkins.model.Jenkins;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A GitHub API answering from canned responses on a local port, and a mocked
+ * {@link Jenkins} using a {@link GithubSecurityRealm}, for the benchmarks.
+ *
+ * The user {@value #USER} owns {@value #USER_REPOSITORIES} repositories and
+ * belongs to the organizations {@code acme} and {@code globex}, each owning
+ * {@value #ORGANIZATION_REPOSITORIES} private repositories named {@code repo-0},
+ * {@code repo-1} and so on, and a public repository named {@code website}.
+ */
+final class GithubStub {
+
+    static final String USER = "alice";
+    static final String ACCESS_TOKEN = "benchmark";
+    static final String[] ORGANIZATIONS = {"acme", "globex"};
+    static final int USER_REPOSITORIES = 20;
+    static final int ORGANIZATION_REPOSITORIES = 300;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, String> responses = new ConcurrentHashMap<String, String>();
+    private final HttpServer server;
+
+    GithubStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = responses.get(exchange.getRequestURI().getPath());
+                int status = body != null ? 200 : 404;
+                if (body == null) {
+                    body = "{\"message\":\"Not Found\"}";
+                }
+                byte[] bytes = body.getBytes(UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(bytes);
+                } finally {
+                    out.close();
+                }
+            }
+        });
+
+        responses.put("/user", user(USER));
+        responses.put("/users/" + USER, user(USER));
+        List<String> organizations = new ArrayList<String>();
+        List<String> teams = new ArrayList<String>();
+        for (String organization : ORGANIZATIONS) {
+            organizations.add("{\"login\":\"" + organization + "\",\"id\":" + organization.hashCode() + "}");
+            teams.add("{\"name\":\"developers\",\"id\":" + organization.hashCode()
+                    + ",\"organization\":{\"login\":\"" + organization + "\"}}");
+            responses.put("/users/" + organization, user(organization));
+            List<String> repositories = new ArrayList<String>();
+            for (int i = 0; i < ORGANIZATION_REPOSITORIES; i++) {
+                repositories.add(repository(organization, "repo-" + i, true));
+            }
+            repositories.add(repository(organization, "website", false));
+            responses.put("/orgs/" + organization + "/repos", array(repositories));
+        }
+        responses.put("/user/orgs", array(organizations));
+        responses.put("/user/teams", array(teams));
+        List<String> repositories = new ArrayList<String>();
+        for (int i = 0; i < USER_REPOSITORIES; i++) {
+            repositories.add(repository(USER, "project-" + i, false));
+        }
+        responses.put("/user/repos", array(repositories));
+        server.start();
+    }
+
+    /**
+     * @return the URL to use as GitHub API URI
+     */
+    String getApiUri() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private String user(String login) {
+        return "{\"login\":\"" + login + "\",\"id\":" + login.hashCode() + ",\"type\":\"User\"}";
+    }
+
+    private String repository(String owner, String name, boolean isPrivate) {
+        String json = "{\"name\":\"" + name + "\",\"full_name\":\"" + owner + "/" + name + "\""
+                + ",\"owner\":{\"login\":\"" + owner + "\"},\"private\":" + isPrivate
+                + ",\"permissions\":{\"admin\":false,\"push\":true,\"pull\":true}}";
+        responses.put("/repos/" + owner + "/" + name, json);
+        return json;
+    }
+
+    private static String array(List<String> elements) {
+        StringBuilder json = new StringBuilder("[");
+        for (String element : elements) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(element);
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Makes {@link Jenkins#getInstance()} return a mock whose security realm
+     * is a mocked {@link GithubSecurityRealm} with the {@code read:org} scope.
+     *
+     * @return the mocked Jenkins
+     */
+    static Jenkins installJenkins() throws ReflectiveOperationException {
+        GithubSecurityRealm realm = Mockito.mock(GithubSecurityRealm.class);
+        Mockito.when(realm.hasScope("read:org")).thenReturn(true);
+        Jenkins jenkins = Mockito.mock(Jenkins.class);
+        Mockito.when(jenkins.getSecurityRealm()).thenReturn(realm);
+        Mockito.when(jenkins.getRootUrl()).thenReturn("http://localhost:8080/");
+        setInstance(jenkins);
+        return jenkins;
+    }
+
+    static void uninstallJenkins() throws ReflectiveOperationException {
+        setInstance(null);
+    }
+
+    private static void setInstance(Jenkins jenkins) throws ReflectiveOperationException {
+        Field instance = Jenkins.class.getDeclaredField("theInstance");
+        instance.setAccessible(true);
+        instance.set(null, jenkins);
+    }
+}
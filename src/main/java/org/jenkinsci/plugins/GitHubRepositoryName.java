@@ -24,6 +24,11 @@ THE SOFTWARE.
  */
 package org.jenkinsci.plugins;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -65,6 +70,23 @@ public class GitHubRepositoryName {
         Pattern.compile("ssh://git@([^/]+)/([^/]+)/([^/]+)/?")
     };
 
+    /**
+     * Stands for URLs which are not GitHub repositories in {@link #recent}.
+     */
+    private static final GitHubRepositoryName NO_MATCH = new GitHubRepositoryName(null, null, null);
+
+    /**
+     * Results of the most recently parsed URLs.
+     */
+    private static final Cache<String, GitHubRepositoryName> recent =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    /**
+     * URLs which cannot be parsed are logged at WARNING at most once per interval.
+     */
+    private static final long WARNING_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final AtomicLong nextWarning = new AtomicLong();
+
     /**
      * Create {@link GitHubRepositoryName} from URL
      *
@@ -74,18 +96,157 @@ public class GitHubRepositoryName {
      *         parsed from the specified URL
      */
     public static GitHubRepositoryName create(final String url) {
-        LOGGER.log(Level.FINE, "Constructing from URL {0}", url);
+        GitHubRepositoryName ret = recent.getIfPresent(url);
+        if (ret == null) {
+            LOGGER.log(Level.FINE, "Constructing from URL {0}", url);
+            ret = parse(url.trim());
+            if (ret == null) {
+                long now = System.currentTimeMillis();
+                long next = nextWarning.get();
+                boolean warn = now >= next && nextWarning.compareAndSet(next, now + WARNING_INTERVAL_MILLIS);
+                LOGGER.log(warn ? Level.WARNING : Level.FINE, "Could not match URL {0}", url);
+                ret = NO_MATCH;
+            } else {
+                LOGGER.log(Level.FINE, "Object is {0}", ret);
+            }
+            recent.put(url, ret);
+        }
+        return ret != NO_MATCH ? ret : null;
+    }
+
+    /**
+     * Parses a URL in a single pass, with the same results as matching
+     * {@link #URL_PATTERNS} in order.
+     *
+     * @param url a trimmed URL
+     * @return the repository, or null if the URL does not match any pattern
+     */
+    static GitHubRepositoryName parse(String url) {
+        if (url.startsWith("git@")) {
+            GitHubRepositoryName ret = parseScpLike(url, true);
+            return ret != null ? ret : parseScpLike(url, false);
+        }
+        int start;
+        boolean userInfo = false;
+        if (url.startsWith("https://")) {
+            start = "https://".length();
+            userInfo = true;
+        } else if (url.startsWith("http://")) {
+            start = "http://".length();
+            userInfo = true;
+        } else if (url.startsWith("git://")) {
+            start = "git://".length();
+        } else if (url.startsWith("ssh://git@")) {
+            start = "ssh://git@".length();
+        } else {
+            return null;
+        }
+        GitHubRepositoryName ret = parseHierarchical(url, start, userInfo, true);
+        return ret != null ? ret : parseHierarchical(url, start, userInfo, false);
+    }
+
+    /**
+     * Parses {@code host/owner/name}, optionally preceded by {@code user@}, after the scheme.
+     *
+     * @param gitSuffix whether the name must end with {@code .git}, which is removed,
+     *        or may be followed by a slash
+     */
+    private static GitHubRepositoryName parseHierarchical(String url, int start, boolean userInfo,
+                                                          boolean gitSuffix) {
+        int end = nameEnd(url, gitSuffix);
+        int hostEnd = url.indexOf('/', start);
+        if (hostEnd <= start || hostEnd >= end) {
+            return null;
+        }
+        int ownerEnd = url.indexOf('/', hostEnd + 1);
+        if (ownerEnd <= hostEnd + 1 || ownerEnd >= end - 1) {
+            return null;
+        }
+        int extra = url.indexOf('/', ownerEnd + 1);
+        if (extra >= 0 && extra < end) {
+            return null;
+        }
+        int hostStart = start;
+        if (userInfo) {
+            // the last @ leaving a host, like the greedy user part of the pattern
+            int at = url.lastIndexOf('@', hostEnd - 2);
+            if (at > start) {
+                hostStart = at + 1;
+            }
+        }
+        return new GitHubRepositoryName(url.substring(hostStart, hostEnd),
+                url.substring(hostEnd + 1, ownerEnd), url.substring(ownerEnd + 1, end));
+    }
+
+    /**
+     * Parses {@code git@host:owner/name}.
+     *
+     * @param gitSuffix whether the name must end with {@code .git}, which is removed,
+     *        or may be followed by a slash
+     */
+    private static GitHubRepositoryName parseScpLike(String url, boolean gitSuffix) {
+        int start = "git@".length();
+        int end = nameEnd(url, gitSuffix);
+        if (end <= start) {
+            return null;
+        }
+        int ownerEnd = url.lastIndexOf('/', end - 1);
+        if (ownerEnd < start || ownerEnd >= end - 1) {
+            return null;
+        }
+        // the last : leaving an owner, like the greedy host part of the pattern
+        int colon = url.lastIndexOf(':', ownerEnd - 2);
+        if (colon <= start || url.lastIndexOf('/', ownerEnd - 1) > colon) {
+            return null;
+        }
+        String host = url.substring(start, colon);
+        if (hasLineTerminator(host)) {
+            // . does not match these, leave such hosts to the patterns
+            return match(url);
+        }
+        return new GitHubRepositoryName(host, url.substring(colon + 1, ownerEnd), url.substring(ownerEnd + 1, end));
+    }
+
+    /**
+     * @return where the repository name ends, or -1 if the URL cannot end a name
+     */
+    private static int nameEnd(String url, boolean gitSuffix) {
+        int end = url.length();
+        if (gitSuffix) {
+            return url.endsWith(".git") ? end - ".git".length() : -1;
+        }
+        return end > 0 && url.charAt(end - 1) == '/' ? end - 1 : end;
+    }
+
+    private static boolean hasLineTerminator(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            switch (s.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return true;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a URL against {@link #URL_PATTERNS} in order.
+     *
+     * @param url a trimmed URL
+     * @return the repository, or null if the URL does not match any pattern
+     */
+    static GitHubRepositoryName match(String url) {
         for (Pattern p : URL_PATTERNS) {
-            Matcher m = p.matcher(url.trim());
+            Matcher m = p.matcher(url);
             if (m.matches()) {
-                LOGGER.log(Level.FINE, "URL matches {0}", m);
-                GitHubRepositoryName ret = new GitHubRepositoryName(m.group(1), m.group(2),
-                        m.group(3));
-                LOGGER.log(Level.FINE, "Object is {0}", ret);
-                return ret;
+                return new GitHubRepositoryName(m.group(1), m.group(2), m.group(3));
             }
         }
-        LOGGER.log(Level.WARNING, "Could not match URL {0}", url);
         return null;
     }
 
@@ -26,8 +26,11 @@ THE SOFTWARE.
  */
 package org.jenkinsci.plugins;
 
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
 import hudson.security.SecurityRealm;
 import jenkins.model.Jenkins;
 import org.acegisecurity.GrantedAuthority;
@@ -40,19 +43,23 @@ import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHTeam;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubBuilder;
-import org.kohsuke.github.RateLimitHandler;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,28 +78,11 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
     private final String githubServer;
     private final String userName;
 
-    private transient GitHub gh;
+    private transient volatile GitHub gh;
     private transient GHMyself me;
     private transient GithubSecurityRealm myRealm = null;
 
     public static final TimeUnit CACHE_EXPIRY = TimeUnit.HOURS;
-    /**
-     * Cache for faster organization based security
-     */
-    private static final Cache<String, Set<String>> userOrganizationCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
-
-    private static final Cache<String, Set<String>> repositoryCollaboratorsCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
-
-    private static final Cache<String, Set<String>> repositoriesByUserCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
-
-    private static final Cache<String, Boolean> publicRepositoryCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
-
-    private static final Cache<String, GithubUser> usersByIdCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
 
     private final List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
 
@@ -107,49 +97,87 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         }
     }
 
+    /**
+     * Repositories a user was found to have access to by listing them page by
+     * page, and which of those listings have been read to the end.
+     */
+    static class RepositoryScan {
+        final Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Set<String> completedOrganizations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        volatile boolean completedUser;
+    }
+
     public GithubAuthenticationToken(final String accessToken, final String githubServer) throws IOException {
         super(new GrantedAuthority[] {});
 
         this.accessToken = accessToken;
         this.githubServer = githubServer;
 
-        this.me = getGitHub().getMyself();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            throw new IllegalStateException("Jenkins not started");
+        }
+        if(jenkins.getSecurityRealm() instanceof GithubSecurityRealm) {
+            myRealm = (GithubSecurityRealm) jenkins.getSecurityRealm();
+        }
+
+        // the calls below only need the access token, so they are made at the same time
+        GithubCaches.Fetch fetchStart = caches().startFetch();
+        final GitHub gitHub = getGitHub();
+        Future<Map<String, GHOrganization>> myOrgsFuture = null;
+        Future<Map<String, Set<GHTeam>>> myTeamsFuture = null;
+        //Search for scopes that allow fetching team membership.  This is documented online.
+        //https://developer.github.com/v3/orgs/#list-your-organizations
+        //https://developer.github.com/v3/orgs/teams/#list-user-teams
+        if(myRealm != null && (myRealm.hasScope("read:org") || myRealm.hasScope("admin:org") || myRealm.hasScope("user") || myRealm.hasScope("repo"))) {
+            myOrgsFuture = GithubFanOut.start(new Callable<Map<String, GHOrganization>>() {
+                @Override
+                public Map<String, GHOrganization> call() throws IOException {
+                    return gitHub.getMyOrganizations();
+                }
+            });
+            myTeamsFuture = GithubFanOut.start(new Callable<Map<String, Set<GHTeam>>>() {
+                @Override
+                public Map<String, Set<GHTeam>> call() throws IOException {
+                    return gitHub.getMyTeams();
+                }
+            });
+        }
+
+        this.me = gitHub.getMyself();
         assert this.me!=null;
 
         setAuthenticated(true);
 
         this.userName = this.me.getLogin();
         authorities.add(SecurityRealm.AUTHENTICATED_AUTHORITY);
-        Jenkins jenkins = Jenkins.getInstance();
-        if (jenkins == null) {
-            throw new IllegalStateException("Jenkins not started");
-        }
-        if(jenkins.getSecurityRealm() instanceof GithubSecurityRealm) {
-            if(myRealm == null) {
-                myRealm = (GithubSecurityRealm) jenkins.getSecurityRealm();
+        if (myOrgsFuture != null) {
+            Map<String, GHOrganization> myOrgs = GithubFanOut.get(myOrgsFuture);
+            Map<String, Set<GHTeam>> myTeams = GithubFanOut.get(myTeamsFuture);
+            // spare the first hasOrganizationPermission check another call
+            GithubCaches.rememberToken(userName, this);
+            GithubCaches caches = caches();
+            Set<String> previousOrgs = caches.userOrganizationCache.getIfPresent(userName);
+            caches.userOrganizationCache.put(userName, myOrgs.keySet());
+            caches.loaded(GithubCacheSpec.ORGANIZATIONS, userName, myOrgs.keySet(), fetchStart);
+            if (previousOrgs != null && !previousOrgs.equals(myOrgs.keySet())) {
+                GithubDecisionCache.invalidateUser(userName);
             }
-            //Search for scopes that allow fetching team membership.  This is documented online.
-            //https://developer.github.com/v3/orgs/#list-your-organizations
-            //https://developer.github.com/v3/orgs/teams/#list-user-teams
-            if(myRealm.hasScope("read:org") || myRealm.hasScope("admin:org") || myRealm.hasScope("user") || myRealm.hasScope("repo")) {
-                Map<String, GHOrganization> myOrgs = getGitHub().getMyOrganizations();
-                Map<String, Set<GHTeam>> myTeams = getGitHub().getMyTeams();
 
-                //fetch organization-only memberships (i.e.: groups without teams)
-                for(String orgLogin : myOrgs.keySet()){
-                    if(!myTeams.containsKey(orgLogin)){
-                        myTeams.put(orgLogin, Collections.<GHTeam>emptySet());
-                    }
+            //fetch organization-only memberships (i.e.: groups without teams)
+            for(String orgLogin : myOrgs.keySet()){
+                if(!myTeams.containsKey(orgLogin)){
+                    myTeams.put(orgLogin, Collections.<GHTeam>emptySet());
                 }
+            }
 
-                for (Map.Entry<String, Set<GHTeam>> teamEntry : myTeams.entrySet()) {
-                    String orgLogin = teamEntry.getKey();
-                    LOGGER.log(Level.FINE, "Fetch teams for user " + userName + " in organization " + orgLogin);
-                    authorities.add(new GrantedAuthorityImpl(orgLogin));
-                    for (GHTeam team : teamEntry.getValue()) {
-                        authorities.add(new GrantedAuthorityImpl(orgLogin + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR
-                                + team.getName()));
-                    }
+            for (Map.Entry<String, Set<GHTeam>> teamEntry : myTeams.entrySet()) {
+                String orgLogin = teamEntry.getKey();
+                LOGGER.log(Level.FINE, "Fetch teams for user " + userName + " in organization " + orgLogin);
+                authorities.add(new GrantedAuthorityImpl(orgLogin));
+                for (GHTeam team : teamEntry.getValue()) {
+                    authorities.add(new GrantedAuthorityImpl(orgLogin + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR
+                            + team.getName()));
                 }
             }
         }
@@ -159,10 +187,29 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
      * Necessary for testing
      */
     public static void clearCaches() {
-        userOrganizationCache.invalidateAll();
-        repositoryCollaboratorsCache.invalidateAll();
-        repositoriesByUserCache.invalidateAll();
-        usersByIdCache.invalidateAll();
+        GithubCaches.current().invalidateAll();
+        GithubClientRegistry.clear();
+    }
+
+    /**
+     * Gets the statistics of the authorization caches, including how many
+     * entries have been evicted because of the configured size or weight bounds.
+     * @return statistics by cache name
+     */
+    public static Map<String, CacheStats> getCacheStats() {
+        return caches().stats();
+    }
+
+    /**
+     * @return the caches built from the specification of the current security realm
+     */
+    static GithubCaches caches() {
+        GithubCacheSpec spec = null;
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null && jenkins.getSecurityRealm() instanceof GithubSecurityRealm) {
+            spec = ((GithubSecurityRealm) jenkins.getSecurityRealm()).getCacheSpecification();
+        }
+        return GithubCaches.forSpec(spec != null ? spec : GithubCacheSpec.DEFAULT);
     }
 
     /**
@@ -181,13 +228,16 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         return githubServer;
     }
 
+    /**
+     * Gets the GitHub client for this token.  The client is shared with every
+     * other token holding the same credential.
+     * @return gitHub
+     */
     public GitHub getGitHub() throws IOException {
-        if (this.gh == null) {
-            this.gh = GitHubBuilder.fromEnvironment()
-                    .withEndpoint(this.githubServer)
-                    .withOAuthToken(this.accessToken)
-                    .withRateLimitHandler(RateLimitHandler.FAIL)
-                    .build();
+        GitHub gh = this.gh;
+        if (gh == null) {
+            gh = GithubClientRegistry.get(this.githubServer, this.accessToken);
+            this.gh = gh;
         }
         return gh;
     }
@@ -236,12 +286,11 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
     public boolean hasOrganizationPermission(String candidateName,
             String organization) {
         try {
-            Set<String> v = userOrganizationCache.get(candidateName,new Callable<Set<String>>() {
-                @Override
-                public Set<String> call() throws Exception {
-                    return getGitHub().getMyOrganizations().keySet();
-                }
-            });
+            if (candidateName.equals(getName())) {
+                // never load or refresh another user's organizations with this token
+                GithubCaches.rememberToken(candidateName, this);
+            }
+            Set<String> v = caches().userOrganizationCache.get(candidateName);
 
             return v.contains(organization);
         } catch (ExecutionException e) {
@@ -250,25 +299,100 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         }
     }
 
+    /**
+     * Checks whether the repository is one of {@link #myRepositories()}.
+     *
+     * Unless that set is already cached, only the listings which can contain the
+     * repository are read: the organization owning it and the user's own
+     * repositories.  Listing stops at the page on which the repository is found,
+     * and every repository seen on the way is remembered for later checks.
+     *
+     * @param repositoryName repository in owner/name form
+     * @return has repository permission
+     */
     public boolean hasRepositoryPermission(final String repositoryName) {
-        return myRepositories().contains(repositoryName);
+        if (caches().repositoriesByUserCache.getIfPresent(getName()) != null) {
+            return myRepositories().contains(repositoryName);
+        }
+        try {
+            RepositoryScan scan = caches().repositoryScanCache.get(getName(), new Callable<RepositoryScan>() {
+                @Override
+                public RepositoryScan call() throws Exception {
+                    return new RepositoryScan();
+                }
+            });
+            return scanForRepository(scan, repositoryName);
+        } catch (ExecutionException | IOException e) {
+            LOGGER.log(Level.SEVERE, "an exception was thrown", e);
+            throw new RuntimeException("authorization failed for user = "
+                    + getName(), e);
+        }
     }
 
-    public Set<String> myRepositories() {
+    private boolean scanForRepository(RepositoryScan scan, String repositoryName) throws IOException {
+        if (scan.names.contains(repositoryName)) {
+            return true;
+        }
+        int slash = repositoryName.indexOf('/');
+        if (slash < 0) {
+            return false;
+        }
+        String owner = repositoryName.substring(0, slash);
+        GHMyself myself = getMyself();
+        if (!owner.equals(getName()) && !scan.completedOrganizations.contains(owner)) {
+            for (GHOrganization organization : myself.getAllOrganizations()) {
+                if (owner.equals(organization.getLogin())) {
+                    if (scanUntil(scan, organization.listRepositories(), repositoryName)) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+            // read to the end, or the user is not a member
+            scan.completedOrganizations.add(owner);
+        }
+        if (!scan.completedUser) {
+            if (scanUntil(scan, myself.listRepositories(), repositoryName)) {
+                return true;
+            }
+            scan.completedUser = true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a listing, fetching pages as needed, until the repository is found.
+     */
+    private boolean scanUntil(RepositoryScan scan, Iterable<GHRepository> repositories,
+                              String repositoryName) throws IOException {
+        GithubRepositorySet.Dictionary repositoryNames = caches().repositoryNames();
+        for (GHRepository repository : repositories) {
+            String name = repositoryNames.intern(repository.getOwner().getLogin() + "/" + repository.getName());
+            scan.names.add(name);
+            if (name.equals(repositoryName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the user may access a single repository by asking GitHub
+     * about that repository only, instead of listing every repository the user
+     * can see like {@link #hasRepositoryPermission(String)} does.
+     *
+     * The result is cached per user and repository.
+     *
+     * @param repositoryName repository in owner/name form
+     * @return has repository permission
+     */
+    public boolean probeRepositoryPermission(final String repositoryName) {
         try {
-            return repositoriesByUserCache.get(getName(),
-                new Callable<Set<String>>() {
+            return caches().repositoryPermissionCache.get(getName() + ":" + repositoryName,
+                new Callable<Boolean>() {
                     @Override
-                    public Set<String> call() throws Exception {
-                        List<GHRepository> userRepositoryList = getMyself().listRepositories().asList();
-                        Set<String> repositoryNames = listToNames(userRepositoryList);
-                        GHPersonSet<GHOrganization> organizations = getMyself().getAllOrganizations();
-                        for (GHOrganization organization : organizations) {
-                            List<GHRepository> orgRepositoryList = organization.listRepositories().asList();
-                            Set<String> orgRepositoryNames = listToNames(orgRepositoryList);
-                            repositoryNames.addAll(orgRepositoryNames);
-                        }
-                        return repositoryNames;
+                    public Boolean call() throws Exception {
+                        return loadRepositoryPermission(repositoryName);
                     }
                 }
             );
@@ -279,6 +403,93 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         }
     }
 
+    /**
+     * Mirrors the membership test against {@link #myRepositories()}: private
+     * repositories count when the user can pull them, public ones only when the
+     * user owns them, belongs to the owning organization or is a collaborator.
+     */
+    private boolean loadRepositoryPermission(String repositoryName) throws IOException {
+        GHRepository repository;
+        try {
+            repository = getGitHub().getRepository(repositoryName);
+        } catch (FileNotFoundException e) {
+            // no access, or no such repository
+            return false;
+        }
+        if (repository == null) {
+            return false;
+        }
+        Boolean wasPublic = caches().publicRepositoryCache.getIfPresent(repositoryName);
+        caches().publicRepositoryCache.put(repositoryName, !repository.isPrivate());
+        if (wasPublic != null && wasPublic == repository.isPrivate()) {
+            GithubDecisionCache.invalidateRepository(repositoryName);
+        }
+        if (repository.isPrivate()) {
+            return repository.hasPullAccess();
+        }
+        String owner = repositoryName.substring(0, repositoryName.indexOf('/'));
+        if (owner.equals(getName())
+                || repository.hasPushAccess()
+                || hasOrganizationPermission(getName(), owner)) {
+            return true;
+        }
+        // everybody can pull a public repository, only this tells pull collaborators apart
+        Boolean collaborator = isCollaborator(repositoryName);
+        return collaborator != null ? collaborator : myRepositories().contains(repositoryName);
+    }
+
+    /**
+     * @return whether the user is a collaborator of the repository, or null if
+     *         GitHub would not tell
+     */
+    private Boolean isCollaborator(String repositoryName) throws IOException {
+        String uri = githubServer.endsWith("/") ? githubServer.substring(0, githubServer.length() - 1) : githubServer;
+        Request request = new Request.Builder()
+                .url(uri + "/repos/" + repositoryName + "/collaborators/" + getName())
+                .header("Authorization", "token " + accessToken)
+                .build();
+        Response response = GithubHttpConnector.get().getClient().newCall(request).execute();
+        response.body().close();
+        switch (response.code()) {
+            case HttpURLConnection.HTTP_NO_CONTENT:
+                return true;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return false;
+            default:
+                LOGGER.log(Level.FINE, "Could not check whether {0} collaborates on {1}: status {2}",
+                        new Object[] {getName(), repositoryName, response.code()});
+                return null;
+        }
+    }
+
+    public Set<String> myRepositories() {
+        try {
+            GithubCaches.rememberToken(getName(), this);
+            return caches().repositoriesByUserCache.get(getName());
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "an exception was thrown", e);
+            throw new RuntimeException("authorization failed for user = "
+                    + getName(), e);
+        }
+    }
+
+    Set<String> loadMyRepositoryNames() throws IOException {
+        GHMyself myself = getMyself();
+        List<GHRepository> userRepositoryList = myself.listRepositories().asList();
+        Set<String> repositoryNames = listToNames(userRepositoryList);
+        List<Set<String>> orgRepositoryNames = GithubFanOut.map(myself.getAllOrganizations(),
+            new GithubFanOut.Call<GHOrganization, Set<String>>() {
+                @Override
+                public Set<String> call(GHOrganization organization) throws IOException {
+                    return listToNames(organization.listRepositories().asList());
+                }
+            });
+        for (Set<String> names : orgRepositoryNames) {
+            repositoryNames.addAll(names);
+        }
+        return caches().repositoryNames().copyOf(repositoryNames);
+    }
+
     public Set<String> listToNames(Collection<GHRepository> respositories) throws IOException {
         Set<String> names = new HashSet<String>();
         for (GHRepository repository : respositories) {
@@ -290,40 +501,146 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
     }
 
     public boolean isPublicRepository(final String repositoryName) {
+        Boolean isPublic = publicRepository(repositoryName);
+        // treated as private until GitHub can tell
+        return isPublic != null && isPublic;
+    }
+
+    /**
+     * @return whether the repository is public, or null when GitHub could not
+     *         tell, for example because the lookup failed
+     */
+    Boolean publicRepository(final String repositoryName) {
+        Boolean isPublic = caches().publicRepositoryCache.getIfPresent(repositoryName);
+        if (isPublic == null) {
+            isPublic = loadPublicRepositories(Collections.singleton(repositoryName)).get(repositoryName);
+        }
+        return isPublic;
+    }
+
+    /**
+     * Finds out which repositories are public and caches the answers, see
+     * {@link GithubPublicRepositories}.  The server access token of the security
+     * realm is used if one is configured, otherwise the token of this user.
+     *
+     * @param repositoryNames repositories in owner/name form
+     * @return whether each repository is public, for the repositories GitHub could tell
+     */
+    Map<String, Boolean> loadPublicRepositories(Collection<String> repositoryNames) {
+        String server = githubServer;
+        String token = accessToken;
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null && jenkins.getSecurityRealm() instanceof GithubSecurityRealm) {
+            GithubSecurityRealm realm = (GithubSecurityRealm) jenkins.getSecurityRealm();
+            if (realm.getServerAccessToken() != null) {
+                server = realm.getGithubApiUri();
+                token = realm.getServerAccessToken().getPlainText();
+            }
+        }
+        Map<String, Boolean> found;
         try {
-            return publicRepositoryCache.get(repositoryName,
-                new Callable<Boolean>() {
+            found = GithubPublicRepositories.lookup(server, token, repositoryNames);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not find out whether " + repositoryNames.size()
+                    + " repositories are public", e);
+            return Collections.emptyMap();
+        }
+        Cache<String, Boolean> publicRepositoryCache = caches().publicRepositoryCache;
+        for (Map.Entry<String, Boolean> entry : found.entrySet()) {
+            Boolean wasPublic = publicRepositoryCache.getIfPresent(entry.getKey());
+            publicRepositoryCache.put(entry.getKey(), entry.getValue());
+            if (wasPublic != null && !wasPublic.equals(entry.getValue())) {
+                GithubDecisionCache.invalidateRepository(entry.getKey());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Loads what checking the permissions of this user on each of the
+     * repositories will need, in parallel and in as few listings as possible:
+     * whether the repositories are public, many per query, then either a probe
+     * of each repository or, when more than one repository is left, the whole
+     * set of {@link #myRepositories()} at once.
+     *
+     * This only fills the caches.  If a call fails, the checks themselves make
+     * it again and report the failure.
+     *
+     * @param repositoryNames repositories in owner/name form
+     * @param read whether read access is checked, which public repositories grant
+     * @param probe whether repository permissions are probed one repository at a time
+     */
+    void prefetchRepositories(Collection<String> repositoryNames, boolean read, boolean probe) {
+        final GithubCaches caches = caches();
+        List<String> unknown = new ArrayList<String>();
+        if (read) {
+            for (String repositoryName : repositoryNames) {
+                if (caches.publicRepositoryCache.getIfPresent(repositoryName) == null) {
+                    unknown.add(repositoryName);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            loadPublicRepositories(unknown);
+        }
+        List<String> unchecked = new ArrayList<String>();
+        try {
+            for (String repositoryName : repositoryNames) {
+                if (read && Boolean.TRUE.equals(caches.publicRepositoryCache.getIfPresent(repositoryName))) {
+                    // readable by everyone
+                    continue;
+                }
+                if (!probe || caches.repositoryPermissionCache.getIfPresent(getName() + ":" + repositoryName) == null) {
+                    unchecked.add(repositoryName);
+                }
+            }
+            if (probe) {
+                GithubFanOut.map(unchecked, new GithubFanOut.Call<String, Boolean>() {
                     @Override
-                    public Boolean call() throws Exception {
-                        GHRepository repository = loadRepository(repositoryName);
-                        // We don't have access so it must not be public (it could be non-existant)
-                        return repository != null && !repository.isPrivate();
+                    public Boolean call(String repositoryName) {
+                        return probeRepositoryPermission(repositoryName);
                     }
-                }
-            );
-        } catch (ExecutionException e) {
-            LOGGER.log(Level.SEVERE, "an exception was thrown", e);
-            throw new RuntimeException("authorization failed for user = "
-                    + getName(), e);
+                });
+            } else if (unchecked.size() > 1) {
+                // one listing answers for every repository
+                myRepositories();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not prefetch the repositories of " + getName(), e);
         }
     }
 
     private static final Logger LOGGER = Logger
             .getLogger(GithubAuthenticationToken.class.getName());
 
-    public GHUser loadUser(String username) throws IOException {
+    /**
+     * Looks up a GitHub user.  Concurrent lookups of the same user, from any
+     * token, share a single call to GitHub.
+     * @param username name of the user
+     * @return the user, or null if unknown
+     */
+    public GHUser loadUser(final String username) throws IOException {
         GithubUser user;
-        try {
-            user = usersByIdCache.getIfPresent(username);
-            if (gh != null && user == null && isAuthenticated()) {
-                GHUser ghUser = getGitHub().getUser(username);
-                user = new GithubUser(ghUser);
-                usersByIdCache.put(username, user);
+        Cache<String, GithubUser> usersByIdCache = caches().usersByIdCache;
+        if (gh != null && isAuthenticated()) {
+            try {
+                user = usersByIdCache.get(username, new Callable<GithubUser>() {
+                    @Override
+                    public GithubUser call() throws Exception {
+                        try {
+                            return new GithubUser(getGitHub().getUser(username));
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINEST, e.getMessage(), e);
+                            return UNKNOWN_USER;
+                        }
+                    }
+                });
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new IOException("Could not load user " + username, e.getCause());
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.FINEST, e.getMessage(), e);
-            user = UNKNOWN_USER;
-            usersByIdCache.put(username, UNKNOWN_USER);
+        } else {
+            user = usersByIdCache.getIfPresent(username);
         }
         return user != null ? user.user : null;
     }
@@ -371,7 +688,7 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         return null;
     }
 
-    public GrantedAuthority[] getGrantedAuthorities(GHUser user) {
+    public GrantedAuthority[] getGrantedAuthorities(final GHUser user) {
         List<GrantedAuthority> groups = new ArrayList<GrantedAuthority>();
         try {
             GHPersonSet<GHOrganization> orgs;
@@ -385,31 +702,125 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
             //Search for scopes that allow fetching team membership.  This is documented online.
             //https://developer.github.com/v3/orgs/#list-your-organizations
             //https://developer.github.com/v3/orgs/teams/#list-user-teams
-            if(this.userName.equals(user.getLogin()) && (myRealm.hasScope("read:org") || myRealm.hasScope("admin:org") || myRealm.hasScope("user") || myRealm.hasScope("repo"))) {
+            boolean self = this.userName.equals(user.getLogin()) && (myRealm.hasScope("read:org") || myRealm.hasScope("admin:org") || myRealm.hasScope("user") || myRealm.hasScope("repo"));
+            if(self) {
                 //This allows us to search for private organization membership.
                 orgs = getMyself().getAllOrganizations();
             } else {
                 //This searches for public organization membership.
                 orgs = user.getOrganizations();
             }
-            for (GHOrganization ghOrganization : orgs) {
-                String orgLogin = ghOrganization.getLogin();
-                LOGGER.log(Level.FINE, "Fetch teams for user " + user.getLogin() + " in organization " + orgLogin);
-                groups.add(new GrantedAuthorityImpl(orgLogin));
-                try {
-                    if (!getMyself().isMemberOf(ghOrganization)) {
-                        continue;
+            List<GHOrganization> orgList = new ArrayList<GHOrganization>(orgs);
+
+            if (self) {
+                // a single listing holds the teams of the user across all organizations
+                Map<String, Set<GHTeam>> myTeams = getGitHub().getMyTeams();
+                for (GHOrganization ghOrganization : orgList) {
+                    String orgLogin = ghOrganization.getLogin();
+                    groups.add(new GrantedAuthorityImpl(orgLogin));
+                    Set<GHTeam> teams = myTeams.get(orgLogin);
+                    if (teams != null) {
+                        for (GHTeam team : teams) {
+                            groups.add(new GrantedAuthorityImpl(orgLogin + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR
+                                    + team.getName()));
+                        }
                     }
-                    Map<String, GHTeam> teams = ghOrganization.getTeams();
-                    for (Map.Entry<String, GHTeam> entry : teams.entrySet()) {
-                        GHTeam team = entry.getValue();
-                        if (team.hasMember(user)) {
+                }
+                return groups.toArray(new GrantedAuthority[groups.size()]);
+            }
+
+            // like the member lists below, only the teams of organizations this user belongs to are looked at
+            final GHMyself myself = getMyself();
+            List<Boolean> memberOf = GithubFanOut.map(orgList,
+                new GithubFanOut.Call<GHOrganization, Boolean>() {
+                    @Override
+                    public Boolean call(GHOrganization ghOrganization) {
+                        try {
+                            return myself.isMemberOf(ghOrganization);
+                        } catch (Error ignore) {
+                            LOGGER.log(Level.FINEST, "not enough rights to check membership of " + ghOrganization.getLogin(), ignore);
+                            return false;
+                        }
+                    }
+                });
+            List<String> orgLogins = new ArrayList<String>();
+            final List<String> memberOrgLogins = new ArrayList<String>();
+            for (int i = 0; i < orgList.size(); i++) {
+                orgLogins.add(orgList.get(i).getLogin());
+                if (memberOf.get(i)) {
+                    memberOrgLogins.add(orgList.get(i).getLogin());
+                }
+            }
+            Map<String, Set<String>> userTeams = null;
+            try {
+                userTeams = GithubTeamMemberships.lookup(githubServer, accessToken, user.getLogin(), memberOrgLogins);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not look the teams of " + user.getLogin() + " up, listing members", e);
+            }
+            if (userTeams != null) {
+                for (String orgLogin : orgLogins) {
+                    groups.add(new GrantedAuthorityImpl(orgLogin));
+                    Set<String> teams = userTeams.get(orgLogin);
+                    if (teams != null) {
+                        for (String team : teams) {
                             groups.add(new GrantedAuthorityImpl(orgLogin + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR
                                     + team));
                         }
                     }
-                } catch (IOException | Error ignore) {
-                    LOGGER.log(Level.FINEST, "not enough rights to list teams from " + orgLogin, ignore);
+                }
+                return groups.toArray(new GrantedAuthority[groups.size()]);
+            }
+
+            // without GraphQL, the member lists of the teams are needed
+            List<Collection<GHTeam>> teamsByOrg = GithubFanOut.map(orgList,
+                new GithubFanOut.Call<GHOrganization, Collection<GHTeam>>() {
+                    @Override
+                    public Collection<GHTeam> call(GHOrganization ghOrganization) {
+                        String orgLogin = ghOrganization.getLogin();
+                        LOGGER.log(Level.FINE, "Fetch teams for user " + user.getLogin() + " in organization " + orgLogin);
+                        try {
+                            if (!memberOrgLogins.contains(orgLogin)) {
+                                return Collections.emptySet();
+                            }
+                            return ghOrganization.getTeams().values();
+                        } catch (IOException | Error ignore) {
+                            LOGGER.log(Level.FINEST, "not enough rights to list teams from " + orgLogin, ignore);
+                            return Collections.emptySet();
+                        }
+                    }
+                });
+
+            // member lists are shared by every user whose groups are computed,
+            // so only the first lookup of a team calls GitHub
+            final Map<String, GHTeam> teamsByGroup = new LinkedHashMap<String, GHTeam>();
+            for (int i = 0; i < orgList.size(); i++) {
+                String orgLogin = orgList.get(i).getLogin();
+                for (GHTeam team : teamsByOrg.get(i)) {
+                    teamsByGroup.put(orgLogin + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR + team.getName(), team);
+                }
+            }
+            List<Boolean> memberships = GithubFanOut.map(teamsByGroup.keySet(),
+                new GithubFanOut.Call<String, Boolean>() {
+                    @Override
+                    public Boolean call(String group) {
+                        try {
+                            return teamMembers(group, teamsByGroup.get(group)).contains(user.getLogin());
+                        } catch (IOException | Error ignore) {
+                            LOGGER.log(Level.FINEST, "not enough rights to list members of " + group, ignore);
+                            return false;
+                        }
+                    }
+                });
+
+            Iterator<String> group = teamsByGroup.keySet().iterator();
+            int next = 0;
+            for (int i = 0; i < orgList.size(); i++) {
+                groups.add(new GrantedAuthorityImpl(orgList.get(i).getLogin()));
+                for (int j = 0; j < teamsByOrg.get(i).size(); j++) {
+                    String teamGroup = group.next();
+                    if (memberships.get(next++)) {
+                        groups.add(new GrantedAuthorityImpl(teamGroup));
+                    }
                 }
             }
         } catch(IOException e) {
@@ -417,4 +828,33 @@ public class GithubAuthenticationToken extends AbstractAuthenticationToken {
         }
         return groups.toArray(new GrantedAuthority[groups.size()]);
     }
+
+    /**
+     * @param group the team in organization*team form
+     * @param team the team
+     * @return the logins of the members of the team
+     */
+    private Set<String> teamMembers(final String group, final GHTeam team) throws IOException {
+        final GithubCaches caches = caches();
+        try {
+            return caches.teamMembersCache.get(group, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    Set<String> logins = caches.loadShared(GithubCacheSpec.TEAM_MEMBERS, group);
+                    if (logins == null) {
+                        GithubCaches.Fetch fetchStart = caches.startFetch();
+                        logins = new HashSet<String>();
+                        for (GHUser member : team.getMembers()) {
+                            logins.add(member.getLogin());
+                        }
+                        caches.loaded(GithubCacheSpec.TEAM_MEMBERS, group, logins, fetchStart);
+                    }
+                    return logins;
+                }
+            });
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException("Could not list members of " + group, e.getCause());
+        }
+    }
 }
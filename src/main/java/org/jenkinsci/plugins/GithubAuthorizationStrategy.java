@@ -26,18 +26,32 @@ THE SOFTWARE.
  */
 package org.jenkinsci.plugins;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import hudson.Extension;
-import hudson.model.AbstractProject;
 import hudson.model.Descriptor;
+import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
 import hudson.security.ACL;
 import hudson.security.AuthorizationStrategy;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author mocleiri
@@ -68,10 +82,23 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
                 allowCcTrayPermission,
                 allowAnonymousReadPermission,
                 allowAnonymousJobStatusPermission);
+        // decisions made under the previous configuration no longer hold
+        GithubDecisionCache.invalidateAll();
     }
 
     private final GithubRequireOrganizationMembershipACL rootACL;
 
+    /**
+     * The ACL of each job, reused by every permission check on that job.  The
+     * ACLs only hold their job weakly, so an entry goes once its job is no longer
+     * in memory, and right away when the job is deleted.
+     */
+    private transient Cache<Job<?,?>, ACL> jobACLs = newJobACLCache();
+
+    private static Cache<Job<?,?>, ACL> newJobACLCache() {
+        return CacheBuilder.newBuilder().weakKeys().build();
+    }
+
     /*
      * (non-Javadoc)
      * @return rootAcl
@@ -85,13 +112,69 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
 
     @Nonnull
     public ACL getACL(@Nonnull Job<?,?> job) {
-        if(job instanceof AbstractProject) {
-            AbstractProject project = (AbstractProject)job;
+        ACL acl = jobACLs.getIfPresent(job);
+        if (acl == null) {
             GithubRequireOrganizationMembershipACL githubACL = (GithubRequireOrganizationMembershipACL) getRootACL();
-            return githubACL.cloneForProject(project);
-        } else {
-            return getRootACL();
+            acl = githubACL.cloneForJob(job);
+            jobACLs.put(job, acl);
         }
+        return acl;
+    }
+
+    /**
+     * Forgets the ACL of a deleted job.
+     */
+    void jobDeleted(Item item) {
+        jobACLs.invalidate(item);
+    }
+
+    /**
+     * Works out which jobs a user holds a permission on, for listings such as
+     * views and the JSON API.  Jobs are grouped by what their decisions depend
+     * on, see {@link GithubRequireOrganizationMembershipACL}: one decision is
+     * made for each repository rather than for each job, and what GitHub has to
+     * be asked about the repositories is fetched in one batch first.
+     *
+     * The decisions are remembered, so checking the jobs one at a time
+     * afterwards, as Jenkins does when rendering them, costs no further calls.
+     * The job ACLs call this with the jobs of the view or folder being listed
+     * when the first of those checks misses.
+     *
+     * @param a the authentication of the user
+     * @param permission the permission, usually {@link hudson.model.Item#READ}
+     * @param jobs the jobs
+     * @return the jobs the user holds the permission on, in their original order
+     */
+    @Nonnull
+    public <J extends Job<?, ?>> List<J> filterJobs(@Nonnull Authentication a, @Nonnull Permission permission,
+                                                   @Nonnull Collection<J> jobs) {
+        Map<String, GithubRequireOrganizationMembershipACL> aclByScope =
+                new LinkedHashMap<String, GithubRequireOrganizationMembershipACL>();
+        List<String> scopes = new ArrayList<String>(jobs.size());
+        for (J job : jobs) {
+            GithubRequireOrganizationMembershipACL acl = (GithubRequireOrganizationMembershipACL) getACL(job);
+            String scope = acl.decisionScope();
+            scopes.add(scope);
+            if (!aclByScope.containsKey(scope)) {
+                aclByScope.put(scope, acl);
+            }
+        }
+        rootACL.prefetch(a, permission, aclByScope.keySet());
+
+        Set<String> permitted = new HashSet<String>();
+        for (Map.Entry<String, GithubRequireOrganizationMembershipACL> entry : aclByScope.entrySet()) {
+            if (entry.getValue().hasPermission(a, permission)) {
+                permitted.add(entry.getKey());
+            }
+        }
+        List<J> filtered = new ArrayList<J>();
+        Iterator<String> scope = scopes.iterator();
+        for (J job : jobs) {
+            if (permitted.contains(scope.next())) {
+                filtered.add(job);
+            }
+        }
+        return filtered;
     }
 
     /**
@@ -106,6 +189,7 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
     }
 
     private Object readResolve() {
+        jobACLs = newJobACLCache();
         return this;
     }
 
@@ -133,6 +217,23 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
         return rootACL.isUseRepositoryPermissions();
     }
 
+    /**
+     * @return isProbeRepositoryPermissions
+     * @see org.jenkinsci.plugins.GithubRequireOrganizationMembershipACL#isProbeRepositoryPermissions()
+     */
+    public boolean isProbeRepositoryPermissions() {
+        return rootACL.isProbeRepositoryPermissions();
+    }
+
+    /**
+     * @param probeRepositoryPermissions check repository permissions one repository at a time
+     */
+    @DataBoundSetter
+    public void setProbeRepositoryPermissions(boolean probeRepositoryPermissions) {
+        rootACL.setProbeRepositoryPermissions(probeRepositoryPermissions);
+        jobACLs.invalidateAll();
+    }
+
     /**
      * @return isAuthenticatedUserCreateJobPermission
      * @see org.jenkinsci.plugins.GithubRequireOrganizationMembershipACL#isAuthenticatedUserCreateJobPermission()
@@ -194,6 +295,7 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
             return this.getOrganizationNames().equals(obj.getOrganizationNames()) &&
                 this.getAdminUserNames().equals(obj.getAdminUserNames()) &&
                 this.isUseRepositoryPermissions() == obj.isUseRepositoryPermissions() &&
+                this.isProbeRepositoryPermissions() == obj.isProbeRepositoryPermissions() &&
                 this.isAuthenticatedUserCreateJobPermission() == obj.isAuthenticatedUserCreateJobPermission() &&
                 this.isAuthenticatedUserReadPermission() == obj.isAuthenticatedUserReadPermission() &&
                 this.isAllowGithubWebHookPermission() == obj.isAllowGithubWebHookPermission() &&
@@ -210,6 +312,17 @@ public class GithubAuthorizationStrategy extends AuthorizationStrategy {
         return rootACL != null ? rootACL.hashCode() : 0;
     }
 
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins != null && jenkins.getAuthorizationStrategy() instanceof GithubAuthorizationStrategy) {
+                ((GithubAuthorizationStrategy) jenkins.getAuthorizationStrategy()).jobDeleted(item);
+            }
+        }
+    }
+
     @Extension
     public static final class DescriptorImpl extends
             Descriptor<AuthorizationStrategy> {
@@ -0,0 +1,56 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.model.Job;
+import jenkins.branch.Branch;
+import jenkins.branch.BranchJobProperty;
+
+/**
+ * Finds the repository of the branch jobs of multibranch projects and
+ * organization folders from their branch source.
+ *
+ * Only used when the branch-api plugin is installed, which this plugin does
+ * not require.
+ */
+final class GithubBranchRepositories {
+
+    private GithubBranchRepositories() {
+    }
+
+    /**
+     * @param job a job
+     * @return the repository of the branch built by the job in owner/name form,
+     *         or null if the job is not a branch job or its source is not on GitHub
+     */
+    static String repositoryOf(Job<?, ?> job) {
+        BranchJobProperty property = job.getProperty(BranchJobProperty.class);
+        if (property == null) {
+            return null;
+        }
+        Branch branch = property.getBranch();
+        return branch != null ? GithubRepositoryIndex.resolve(branch.getScm()) : null;
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extension point for a second tier behind the organization, repository and
+ * team member caches, shared by several Jenkins controllers which
+ * authenticate the same users against the same GitHub server.
+ *
+ * Each controller keeps its own in-memory caches.  An entry missing there is
+ * looked for in the backend before asking GitHub, and every entry loaded from
+ * GitHub is stored in the backend for the other controllers.  Invalidations,
+ * such as those made on webhook deliveries, are published through the backend
+ * and applied by the other controllers when they poll for them.
+ *
+ * The first enabled backend is used.  Without one, each controller only uses
+ * its in-memory caches.  Failures of the backend are logged and otherwise
+ * ignored: GitHub is asked instead.
+ */
+public abstract class GithubCacheBackend implements ExtensionPoint {
+
+    /**
+     * Seconds between two polls for invalidations published by other controllers.
+     */
+    static final long POLL_SECONDS =
+            Long.getLong(GithubCacheBackend.class.getName() + ".pollSeconds", 10);
+
+    private static volatile GithubCacheBackend current;
+
+    /**
+     * An entry of a cache of name sets.
+     */
+    public static final class Entry {
+        /** The names, e.g. the organizations of a user. */
+        public final Set<String> names;
+        /** When the names started being fetched from GitHub, in milliseconds since the epoch. */
+        public final long loadTime;
+        /** The {@link #sequence()} of the storing controller when the names started being fetched. */
+        public final long sequence;
+
+        public Entry(Set<String> names, long loadTime, long sequence) {
+            this.names = Collections.unmodifiableSet(names);
+            this.loadTime = loadTime;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * @return whether this backend is configured
+     */
+    public abstract boolean isEnabled();
+
+    /**
+     * @param cache the name of the cache, see {@link GithubCacheSpec}
+     * @param key the key
+     * @return the entry, or null if there is none
+     * @throws IOException if the backend could not be read
+     */
+    public abstract Entry get(String cache, String key) throws IOException;
+
+    /**
+     * Stores an entry, replacing the previous one.
+     *
+     * @param cache the name of the cache, see {@link GithubCacheSpec}
+     * @param key the key
+     * @param entry the entry
+     * @throws IOException if the backend could not be written
+     */
+    public abstract void put(String cache, String key, Entry entry) throws IOException;
+
+    /**
+     * @param cache the name of the cache, see {@link GithubCacheSpec}
+     * @param key the key
+     * @throws IOException if the backend could not be written
+     */
+    public abstract void remove(String cache, String key) throws IOException;
+
+    /**
+     * Makes an invalidation available to the other controllers.
+     *
+     * @param invalidation an opaque single line message
+     * @throws IOException if the backend could not be written
+     */
+    public abstract void publish(String invalidation) throws IOException;
+
+    /**
+     * @return the invalidations published by other controllers since the previous poll, oldest first
+     * @throws IOException if the backend could not be read
+     */
+    public abstract List<String> poll() throws IOException;
+
+    /**
+     * Invalidations are numbered in the order they are published, across all
+     * controllers, so that an invalidation published after an entry started
+     * being fetched has a higher number than the one the entry was stored
+     * with, whatever the clocks of the controllers say.
+     *
+     * @return the highest number of the invalidations this controller has published or polled, 0 if none
+     */
+    public abstract long sequence();
+
+    /**
+     * @return the backend in use, or null if there is none
+     */
+    static GithubCacheBackend current() {
+        GithubCacheBackend backend = current;
+        if (backend == null) {
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins == null) {
+                return null;
+            }
+            backend = NONE;
+            ExtensionList<GithubCacheBackend> backends = jenkins.getExtensionList(GithubCacheBackend.class);
+            if (backends != null) {
+                for (GithubCacheBackend candidate : backends) {
+                    if (candidate.isEnabled()) {
+                        LOGGER.log(Level.CONFIG, "Sharing GitHub authorization caches through {0}",
+                                candidate.getClass().getName());
+                        backend = candidate;
+                        break;
+                    }
+                }
+            }
+            current = backend;
+        }
+        return backend == NONE ? null : backend;
+    }
+
+    /**
+     * Necessary for testing
+     */
+    static void use(GithubCacheBackend backend) {
+        current = backend != null ? backend : NONE;
+    }
+
+    /**
+     * Stands for no backend, once the extensions have been looked at.
+     */
+    private static final GithubCacheBackend NONE = new GithubCacheBackend() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public Entry get(String cache, String key) {
+            return null;
+        }
+
+        @Override
+        public void put(String cache, String key, Entry entry) {
+        }
+
+        @Override
+        public void remove(String cache, String key) {
+        }
+
+        @Override
+        public void publish(String invalidation) {
+        }
+
+        @Override
+        public List<String> poll() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long sequence() {
+            return 0;
+        }
+    };
+
+    /**
+     * Applies the invalidations published by other controllers.  Polling may
+     * wait on a network file system, so it runs on its own thread rather than
+     * on the timer shared by periodic work.
+     */
+    @Extension
+    public static class InvalidationPoller extends AsyncPeriodicWork {
+
+        public InvalidationPoller() {
+            super("GitHub authorization cache invalidations");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(POLL_SECONDS);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            GithubCaches.current().expireInvalidations();
+            GithubCacheBackend backend = current();
+            if (backend == null) {
+                return;
+            }
+            List<String> invalidations;
+            try {
+                invalidations = backend.poll();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not poll for GitHub authorization cache invalidations", e);
+                return;
+            }
+            GithubCaches caches = GithubCaches.current();
+            for (String invalidation : invalidations) {
+                caches.apply(invalidation);
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubCacheBackend.class.getName());
+}
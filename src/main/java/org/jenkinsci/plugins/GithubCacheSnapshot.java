@@ -0,0 +1,227 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves the organization, repository and team member caches to
+ * {@code JENKINS_HOME/caches/github-oauth-authorization.bin} periodically and on
+ * shutdown, and restores them at startup, so that a restart does not make every user list their
+ * organizations and repositories again.
+ *
+ * Entries keep the time they were loaded at, and are dropped when they reach
+ * the age at which they would have been loaded again.
+ */
+@Extension
+public class GithubCacheSnapshot extends AsyncPeriodicWork {
+
+    /**
+     * Minutes between snapshots, 0 to neither save nor restore them.
+     */
+    private static final long INTERVAL_MINUTES =
+            Long.getLong(GithubCacheSnapshot.class.getName() + ".intervalMinutes", 15);
+
+    private static final int MAGIC = 0x4748_4F41;
+    private static final int FORMAT_VERSION = 1;
+
+    private long lastWritten = System.currentTimeMillis();
+
+    public GithubCacheSnapshot() {
+        super("GitHub authorization cache snapshot");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return MIN;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException {
+        GithubCaches caches = GithubCaches.current();
+        caches.expireRestored();
+        File file = getFile();
+        if (file == null || INTERVAL_MINUTES <= 0
+                || System.currentTimeMillis() - lastWritten < TimeUnit.MINUTES.toMillis(INTERVAL_MINUTES)) {
+            return;
+        }
+        lastWritten = System.currentTimeMillis();
+        write(caches, file);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void restore() {
+        File file = getFile();
+        if (file == null || INTERVAL_MINUTES <= 0) {
+            return;
+        }
+        try {
+            int restored = read(GithubAuthenticationToken.caches(), file);
+            LOGGER.log(Level.FINE, "Restored {0} GitHub authorization cache entries", restored);
+        } catch (FileNotFoundException e) {
+            // first start
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not restore the GitHub authorization caches from " + file, e);
+        }
+    }
+
+    @Terminator
+    public static void save() {
+        File file = getFile();
+        if (file == null || INTERVAL_MINUTES <= 0) {
+            return;
+        }
+        try {
+            write(GithubCaches.current(), file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save the GitHub authorization caches to " + file, e);
+        }
+    }
+
+    /**
+     * Writes the {@link GithubCaches#PERSISTED} caches to a file, replacing it atomically.
+     *
+     * @param caches the caches
+     * @param file the file
+     * @throws IOException if the file could not be written
+     */
+    static void write(GithubCaches caches, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(GithubCaches.PERSISTED.size());
+                for (String cache : GithubCaches.PERSISTED) {
+                    out.writeUTF(cache);
+                    Map<String, Long> loadTimes = caches.loadTimes(cache);
+                    for (Map.Entry<String, Set<String>> entry : caches.persisted(cache).asMap().entrySet()) {
+                        Long loadTime = loadTimes.get(entry.getKey());
+                        if (loadTime == null) {
+                            continue;
+                        }
+                        out.writeBoolean(true);
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(loadTime);
+                        out.writeInt(entry.getValue().size());
+                        for (String name : entry.getValue()) {
+                            out.writeUTF(name);
+                        }
+                    }
+                    out.writeBoolean(false);
+                }
+            }
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                LOGGER.log(Level.FINE, "Could not delete {0}", tmp);
+            }
+        }
+    }
+
+    /**
+     * Restores the entries of a snapshot which are not too old into the caches.
+     *
+     * @param caches the caches
+     * @param file the snapshot
+     * @return the number of entries restored
+     * @throws IOException if the file could not be read or is not a snapshot of this version
+     */
+    static int read(GithubCaches caches, File file) throws IOException {
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache snapshot version " + version);
+            }
+            for (int remaining = in.readInt(); remaining > 0; remaining--) {
+                String cache = in.readUTF();
+                boolean known = GithubCaches.PERSISTED.contains(cache);
+                while (in.readBoolean()) {
+                    String key = in.readUTF();
+                    long loadTime = in.readLong();
+                    int size = in.readInt();
+                    Set<String> names = new HashSet<String>(size * 4 / 3 + 1);
+                    for (int i = 0; i < size; i++) {
+                        names.add(in.readUTF());
+                    }
+                    if (known) {
+                        Set<String> value = cache.equals(GithubCacheSpec.REPOSITORIES)
+                                ? caches.repositoryNames().copyOf(names) : names;
+                        if (caches.restore(cache, key, value, loadTime)) {
+                            restored++;
+                        }
+                    }
+                }
+            }
+        }
+        return restored;
+    }
+
+    private static File getFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || jenkins.getRootDir() == null) {
+            return null;
+        }
+        return new File(new File(jenkins.getRootDir(), "caches"), "github-oauth-authorization.bin");
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubCacheSnapshot.class.getName());
+}
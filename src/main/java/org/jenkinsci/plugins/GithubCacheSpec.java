@@ -0,0 +1,199 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed form of the cache specification configured on {@link GithubSecurityRealm}.
+ *
+ * The specification is a comma or newline separated list of
+ * {@code cache.setting=value} pairs, for example
+ * {@code repositories.expireAfterWrite=2h, repositories.maximumWeight=5000000, users.maximumSize=10000}.
+ * The settings follow the names used by Guava's {@code CacheBuilder}:
+ * <ul>
+ *     <li>{@code expireAfterWrite} - a duration such as {@code 90s}, {@code 30m}, {@code 1h} or {@code 1d}</li>
+ *     <li>{@code maximumSize} - the maximum number of entries</li>
+ *     <li>{@code maximumWeight} - the maximum total number of names held by a cache of name sets</li>
+ * </ul>
+ * Caches which are not mentioned keep their defaults: one hour and no bound,
+ * except for {@code publicRepositories}, {@code users} and {@code repositoryPermissions}
+ * which are capped at {@value #DEFAULT_MAXIMUM_SIZE} entries.
+ */
+final class GithubCacheSpec {
+
+    /** Organizations of each user. */
+    static final String ORGANIZATIONS = "organizations";
+    /** Collaborators of each repository. */
+    static final String REPOSITORY_COLLABORATORS = "repositoryCollaborators";
+    /** Repositories visible to each user. */
+    static final String REPOSITORIES = "repositories";
+    /** Whether a repository is public. */
+    static final String PUBLIC_REPOSITORIES = "publicRepositories";
+    /** GitHub users looked up by name. */
+    static final String USERS = "users";
+    /** Whether a user has permission on a single repository. */
+    static final String REPOSITORY_PERMISSIONS = "repositoryPermissions";
+    /** Members of each team. */
+    static final String TEAM_MEMBERS = "teamMembers";
+
+    static final List<String> CACHE_NAMES = Collections.unmodifiableList(Arrays.asList(
+            ORGANIZATIONS, REPOSITORY_COLLABORATORS, REPOSITORIES, PUBLIC_REPOSITORIES, USERS,
+            REPOSITORY_PERMISSIONS, TEAM_MEMBERS));
+
+    /** Caches whose values are name sets, and can therefore be bounded by weight. */
+    private static final List<String> WEIGHTED_CACHES = Arrays.asList(
+            ORGANIZATIONS, REPOSITORY_COLLABORATORS, REPOSITORIES, TEAM_MEMBERS);
+
+    static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+    static final GithubCacheSpec DEFAULT = parse("");
+
+    /**
+     * Settings of a single cache, -1 meaning unbounded.
+     */
+    static final class Settings {
+        long expireAfterWriteSeconds = TimeUnit.HOURS.toSeconds(1);
+        long maximumSize = -1;
+        long maximumWeight = -1;
+    }
+
+    private final String spec;
+    private final Map<String, Settings> settings;
+
+    private GithubCacheSpec(String spec, Map<String, Settings> settings) {
+        this.spec = spec;
+        this.settings = settings;
+    }
+
+    /**
+     * @param spec the specification, may be null or empty
+     * @return the parsed specification
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    static GithubCacheSpec parse(String spec) {
+        String normalized = spec == null ? "" : spec.trim();
+        Map<String, Settings> settings = new HashMap<String, Settings>();
+        for (String cache : CACHE_NAMES) {
+            settings.put(cache, new Settings());
+        }
+        settings.get(PUBLIC_REPOSITORIES).maximumSize = DEFAULT_MAXIMUM_SIZE;
+        settings.get(USERS).maximumSize = DEFAULT_MAXIMUM_SIZE;
+        settings.get(REPOSITORY_PERMISSIONS).maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+        for (String pair : normalized.split("[,\\n]")) {
+            pair = pair.trim();
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            int dot = pair.indexOf('.');
+            if (eq < 0 || dot < 0 || dot > eq) {
+                throw new IllegalArgumentException("Expected cache.setting=value but got: " + pair);
+            }
+            String cache = pair.substring(0, dot).trim();
+            String key = pair.substring(dot + 1, eq).trim();
+            String value = pair.substring(eq + 1).trim();
+            Settings s = settings.get(cache);
+            if (s == null) {
+                throw new IllegalArgumentException("Unknown cache " + cache + ", expected one of " + CACHE_NAMES);
+            }
+            if (key.equals("expireAfterWrite")) {
+                s.expireAfterWriteSeconds = parseDuration(value);
+            } else if (key.equals("maximumSize")) {
+                s.maximumSize = parseLong(value);
+                s.maximumWeight = -1;
+            } else if (key.equals("maximumWeight")) {
+                if (!WEIGHTED_CACHES.contains(cache)) {
+                    throw new IllegalArgumentException("maximumWeight is only supported for " + WEIGHTED_CACHES);
+                }
+                s.maximumWeight = parseLong(value);
+                s.maximumSize = -1;
+            } else {
+                throw new IllegalArgumentException("Unknown cache setting " + key);
+            }
+        }
+        return new GithubCacheSpec(normalized, settings);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            long l = Long.parseLong(value);
+            if (l < 0) {
+                throw new IllegalArgumentException("Expected a positive number but got: " + value);
+            }
+            return l;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number but got: " + value, e);
+        }
+    }
+
+    private static long parseDuration(String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Expected a duration such as 1h");
+        }
+        TimeUnit unit;
+        switch (value.charAt(value.length() - 1)) {
+            case 'd': unit = TimeUnit.DAYS; break;
+            case 'h': unit = TimeUnit.HOURS; break;
+            case 'm': unit = TimeUnit.MINUTES; break;
+            case 's': unit = TimeUnit.SECONDS; break;
+            default: throw new IllegalArgumentException("Expected a duration such as 1h but got: " + value);
+        }
+        long seconds = unit.toSeconds(parseLong(value.substring(0, value.length() - 1)));
+        if (seconds == 0) {
+            throw new IllegalArgumentException("Duration must not be zero: " + value);
+        }
+        return seconds;
+    }
+
+    /**
+     * @param cache one of {@link #CACHE_NAMES}
+     * @return the settings for that cache
+     */
+    Settings get(String cache) {
+        return settings.get(cache);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GithubCacheSpec && spec.equals(((GithubCacheSpec) o).spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
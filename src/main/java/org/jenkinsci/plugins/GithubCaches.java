@@ -0,0 +1,898 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.GithubAuthenticationToken.GithubUser;
+import org.jenkinsci.plugins.GithubAuthenticationToken.RepositoryScan;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The caches behind {@link GithubAuthenticationToken}, built from a {@link GithubCacheSpec}.
+ *
+ * A new set of caches is built whenever the specification configured on the
+ * security realm changes.
+ */
+final class GithubCaches {
+
+    /**
+     * Number of threads reloading cache entries in the background.
+     */
+    private static final int REFRESH_THREADS =
+            Integer.getInteger(GithubAuthenticationToken.class.getName() + ".refreshThreads", 4);
+
+    private static final ExecutorService refreshExecutor = createRefreshExecutor();
+
+    /**
+     * Delays refreshes on behalf of users whose rate limit is low.
+     */
+    private static final ScheduledExecutorService delayExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "GithubAuthenticationToken.refreshDelay"));
+
+    /**
+     * Tokens which background refreshes run on behalf of, by user name.
+     * Held weakly so that a logged out session does not keep its token alive.
+     */
+    private static final Cache<String, GithubAuthenticationToken> refreshTokens =
+            CacheBuilder.newBuilder().weakValues().build();
+
+    private static final Weigher<String, Set<String>> SET_SIZE = new Weigher<String, Set<String>>() {
+        @Override
+        public int weigh(String key, Set<String> value) {
+            return value.size();
+        }
+    };
+
+    /**
+     * Caches saved by {@link GithubCacheSnapshot}: the listings a restart would otherwise
+     * have to fetch again for every user.
+     */
+    static final List<String> PERSISTED = Collections.unmodifiableList(Arrays.asList(
+            GithubCacheSpec.ORGANIZATIONS, GithubCacheSpec.REPOSITORIES, GithubCacheSpec.TEAM_MEMBERS));
+
+    private static volatile GithubCaches current = new GithubCaches(GithubCacheSpec.DEFAULT);
+
+    final GithubCacheSpec spec;
+
+    /**
+     * When each entry of the {@link #PERSISTED} caches was loaded, by cache name.
+     */
+    private final Map<String, ConcurrentMap<String, Long>> loadTimes = new HashMap<String, ConcurrentMap<String, Long>>();
+
+    /**
+     * Entries restored from a snapshot, which are dropped once as old as
+     * their cache allows unless they have been loaded again since.
+     */
+    private final Map<String, Set<String>> restored = new HashMap<String, Set<String>>();
+
+    /**
+     * The last invalidation of each entry of the {@link #PERSISTED} caches, by
+     * cache name.  What was fetched from GitHub before then is neither shared
+     * nor taken from the {@link GithubCacheBackend}: a controller whose fetch
+     * was under way may store its value after the shared entry was removed.
+     */
+    private final Map<String, ConcurrentMap<String, Invalidation>> invalidations =
+            new HashMap<String, ConcurrentMap<String, Invalidation>>();
+
+    /**
+     * Raised by every invalidation, so that fetches and invalidations made by
+     * this controller can be ordered without looking at the clock.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Cache for faster organization based security.
+     * Entries due for refresh are reloaded in the background while the
+     * old value is still served, and dropped when twice as old.
+     */
+    final LoadingCache<String, Set<String>> userOrganizationCache;
+
+    final Cache<String, Set<String>> repositoryCollaboratorsCache;
+
+    /**
+     * Refreshed the same way as {@link #userOrganizationCache}.
+     */
+    final LoadingCache<String, Set<String>> repositoriesByUserCache;
+
+    /**
+     * Repositories seen so far by single repository checks, which stop
+     * listing as soon as they find the repository.  Expires like
+     * {@link #repositoriesByUserCache}.
+     */
+    final Cache<String, RepositoryScan> repositoryScanCache;
+
+    final Cache<String, Boolean> publicRepositoryCache;
+
+    final Cache<String, GithubUser> usersByIdCache;
+
+    /**
+     * Results of single repository permission checks, keyed by user and repository.
+     */
+    final Cache<String, Boolean> repositoryPermissionCache;
+
+    /**
+     * Logins of the members of each team, keyed by organization and team name.
+     * Shared by every user whose groups are computed.
+     */
+    final Cache<String, Set<String>> teamMembersCache;
+
+    /**
+     * Names held by the sets of {@link #repositoriesByUserCache}, started afresh
+     * by {@link #invalidateAll()} and {@link #compactRepositoryNames()} so names
+     * no longer cached can be collected.
+     */
+    private volatile GithubRepositorySet.Dictionary repositoryNames = new GithubRepositorySet.Dictionary();
+
+    /* When the dictionary was last compacted, how many sets it then held, and how many were dropped since. */
+    private volatile long compactedAt = System.currentTimeMillis();
+    private volatile long compactedSets;
+    private final AtomicLong droppedSets = new AtomicLong();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private GithubCaches(GithubCacheSpec spec) {
+        this.spec = spec;
+        for (String cache : PERSISTED) {
+            loadTimes.put(cache, new ConcurrentHashMap<String, Long>());
+            restored.put(cache, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+            invalidations.put(cache, new ConcurrentHashMap<String, Invalidation>());
+        }
+        this.userOrganizationCache = setCache(GithubCacheSpec.ORGANIZATIONS, true).build(
+                new RefreshingLoader(this, GithubCacheSpec.ORGANIZATIONS) {
+                    @Override
+                    Set<String> fetch(GithubAuthenticationToken token) throws IOException {
+                        return token.getGitHub().getMyOrganizations().keySet();
+                    }
+                });
+        this.repositoryCollaboratorsCache = setCache(GithubCacheSpec.REPOSITORY_COLLABORATORS, false).build();
+        this.repositoriesByUserCache = setCache(GithubCacheSpec.REPOSITORIES, true).build(
+                new RefreshingLoader(this, GithubCacheSpec.REPOSITORIES) {
+                    @Override
+                    Set<String> fetch(GithubAuthenticationToken token) throws IOException {
+                        return token.loadMyRepositoryNames();
+                    }
+                });
+        this.repositoryScanCache = builder(GithubCacheSpec.REPOSITORIES, false).build();
+        this.publicRepositoryCache = builder(GithubCacheSpec.PUBLIC_REPOSITORIES, false).build();
+        this.usersByIdCache = builder(GithubCacheSpec.USERS, false).build();
+        this.repositoryPermissionCache = builder(GithubCacheSpec.REPOSITORY_PERMISSIONS, false).build();
+        this.teamMembersCache = setCache(GithubCacheSpec.TEAM_MEMBERS, false).build();
+    }
+
+    /**
+     * Gets the caches for a specification, rebuilding them if it changed.
+     *
+     * @param spec the specification
+     * @return the caches
+     */
+    static GithubCaches forSpec(GithubCacheSpec spec) {
+        GithubCaches caches = current;
+        if (!caches.spec.equals(spec)) {
+            synchronized (GithubCaches.class) {
+                caches = current;
+                if (!caches.spec.equals(spec)) {
+                    LOGGER.config("Rebuilding GitHub authorization caches with specification: " + spec);
+                    caches = new GithubCaches(spec);
+                    current = caches;
+                    GithubDecisionCache.invalidateAll();
+                }
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * @return the caches currently in use
+     */
+    static GithubCaches current() {
+        return current;
+    }
+
+    /**
+     * Registers the token which entries for its user are loaded and refreshed with.
+     *
+     * @param userName the user name
+     * @param token the token of that user
+     */
+    static void rememberToken(String userName, GithubAuthenticationToken token) {
+        refreshTokens.put(userName, token);
+    }
+
+    /**
+     * @param cache one of {@link #PERSISTED}
+     * @return the cache of that name
+     */
+    Cache<String, Set<String>> persisted(String cache) {
+        if (cache.equals(GithubCacheSpec.ORGANIZATIONS)) {
+            return userOrganizationCache;
+        } else if (cache.equals(GithubCacheSpec.REPOSITORIES)) {
+            return repositoriesByUserCache;
+        } else if (cache.equals(GithubCacheSpec.TEAM_MEMBERS)) {
+            return teamMembersCache;
+        }
+        throw new IllegalArgumentException("Cache is not persisted: " + cache);
+    }
+
+    /**
+     * Records that an entry has just been loaded from GitHub.
+     *
+     * @param cache the cache name, ignored unless one of {@link #PERSISTED}
+     * @param key the key of the entry
+     */
+    void loaded(String cache, String key) {
+        ConcurrentMap<String, Long> times = loadTimes.get(cache);
+        if (times != null) {
+            times.put(key, System.currentTimeMillis());
+            restored.get(cache).remove(key);
+        }
+    }
+
+    /**
+     * Records that an entry has just been loaded from GitHub, and stores it in
+     * the {@link GithubCacheBackend} for the other controllers.
+     *
+     * @param cache one of {@link #PERSISTED}
+     * @param key the key of the entry
+     * @param value the value loaded
+     * @param fetch when the value started being fetched from GitHub
+     */
+    void loaded(String cache, String key, Set<String> value, Fetch fetch) {
+        loaded(cache, key);
+        GithubCacheBackend backend = GithubCacheBackend.current();
+        if (backend != null && !invalidatedSince(cache, key, fetch)) {
+            try {
+                backend.put(cache, key, new GithubCacheBackend.Entry(value, fetch.time, fetch.sequence));
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not share " + cache + " of " + key, e);
+            }
+        }
+    }
+
+    /**
+     * Gets an entry another controller loaded, if it is not older than this
+     * cache allows.  Like a restored entry it keeps its original load time.
+     *
+     * @param cache one of {@link #PERSISTED}
+     * @param key the key of the entry
+     * @return the value, or null if it has to be loaded from GitHub
+     */
+    Set<String> loadShared(String cache, String key) {
+        GithubCacheBackend backend = GithubCacheBackend.current();
+        if (backend == null) {
+            return null;
+        }
+        GithubCacheBackend.Entry entry;
+        try {
+            entry = backend.get(cache, key);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not get shared " + cache + " of " + key, e);
+            return null;
+        }
+        Invalidation invalidation = invalidations.get(cache).get(key);
+        if (entry == null || System.currentTimeMillis() - entry.loadTime >= maximumAgeMillis(cache)
+                || invalidation != null && invalidation.sequence > entry.sequence) {
+            return null;
+        }
+        // dropped by expireRestored once as old as this cache allows
+        loadTimes.get(cache).put(key, entry.loadTime);
+        restored.get(cache).add(key);
+        return cache.equals(GithubCacheSpec.REPOSITORIES)
+                ? repositoryNames.copyOf(entry.names) : new HashSet<String>(entry.names);
+    }
+
+    /**
+     * @return what this controller knows now, to be compared with the invalidations
+     *         made while a value is fetched from GitHub
+     */
+    Fetch startFetch() {
+        GithubCacheBackend backend = GithubCacheBackend.current();
+        return new Fetch(System.currentTimeMillis(), generation.get(), backend != null ? backend.sequence() : 0);
+    }
+
+    /**
+     * @param cache one of {@link #PERSISTED}
+     * @param key the key of the entry
+     * @param fetch when a value of the entry started being fetched from GitHub
+     * @return whether the entry was invalidated since, which makes that value stale
+     */
+    boolean invalidatedSince(String cache, String key, Fetch fetch) {
+        Invalidation invalidation = invalidations.get(cache).get(key);
+        return invalidation != null && invalidation.generation > fetch.generation;
+    }
+
+    /**
+     * Forgets the invalidations which no longer matter: what was fetched
+     * before them is too old to be served anyway.
+     */
+    void expireInvalidations() {
+        long now = System.nanoTime();
+        for (String cache : PERSISTED) {
+            long maximumAge = TimeUnit.MILLISECONDS.toNanos(maximumAgeMillis(cache));
+            for (Iterator<Invalidation> it = invalidations.get(cache).values().iterator(); it.hasNext();) {
+                if (now - it.next().nanoTime >= maximumAge) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cache one of {@link #PERSISTED}
+     * @return the time each entry was loaded at, by key
+     */
+    Map<String, Long> loadTimes(String cache) {
+        return Collections.unmodifiableMap(loadTimes.get(cache));
+    }
+
+    /**
+     * @param cache one of {@link #PERSISTED}
+     * @return how long an entry is served before it is loaded again
+     */
+    long maximumAgeMillis(String cache) {
+        return TimeUnit.SECONDS.toMillis(spec.get(cache).expireAfterWriteSeconds);
+    }
+
+    /**
+     * Puts an entry loaded before a restart, keeping its original load time.
+     *
+     * @param cache one of {@link #PERSISTED}
+     * @param key the key
+     * @param value the value
+     * @param loadTime when the value was loaded from GitHub
+     * @return whether the entry was put, which it is not if it is too old or already present
+     */
+    boolean restore(String cache, String key, Set<String> value, long loadTime) {
+        if (System.currentTimeMillis() - loadTime >= maximumAgeMillis(cache)) {
+            return false;
+        }
+        Cache<String, Set<String>> c = persisted(cache);
+        if (c.asMap().putIfAbsent(key, value) != null) {
+            return false;
+        }
+        loadTimes.get(cache).put(key, loadTime);
+        restored.get(cache).add(key);
+        return true;
+    }
+
+    /**
+     * Drops restored entries which have reached the age at which they would
+     * have been loaded again had Jenkins not restarted.
+     */
+    void expireRestored() {
+        long now = System.currentTimeMillis();
+        for (String cache : PERSISTED) {
+            long maximumAge = maximumAgeMillis(cache);
+            ConcurrentMap<String, Long> times = loadTimes.get(cache);
+            for (Iterator<String> it = restored.get(cache).iterator(); it.hasNext();) {
+                String key = it.next();
+                Long loadTime = times.get(key);
+                if (loadTime == null || now - loadTime >= maximumAge) {
+                    it.remove();
+                    persisted(cache).invalidate(key);
+                }
+            }
+        }
+    }
+
+    /* Invalidations published to other controllers, see apply. */
+    private static final String USER = "user";
+    private static final String USER_REPOSITORIES = "userRepositories";
+    private static final String REPOSITORY = "repository";
+    private static final String REPOSITORY_COLLABORATORS = "repositoryCollaborators";
+    private static final String TEAM = "team";
+
+    /**
+     * Drops everything cached about the organizations and repositories of a user.
+     *
+     * @param user the login of the user
+     */
+    void invalidateUser(String user) {
+        publish(USER, user);
+        dropUser(user);
+    }
+
+    /**
+     * Drops everything cached about the repositories a user has access to.
+     *
+     * @param user the login of the user
+     */
+    void invalidateUserRepositories(String user) {
+        publish(USER_REPOSITORIES, user);
+        dropUserRepositories(user);
+    }
+
+    /**
+     * Drops everything cached about a repository, including the repositories of
+     * each user whose cached repositories contain it.
+     *
+     * @param repositoryName the repository in owner/name form
+     * @param ownerMembersAffected whether the members of the owning organization may
+     *                             have gained or lost access, as when the repository
+     *                             is created or its visibility changes
+     */
+    void invalidateRepository(String repositoryName, boolean ownerMembersAffected) {
+        publish(REPOSITORY, repositoryName, String.valueOf(ownerMembersAffected));
+        dropRepository(repositoryName, ownerMembersAffected);
+    }
+
+    /**
+     * Drops the collaborators of a repository.
+     *
+     * @param repositoryName the repository in owner/name form
+     */
+    void invalidateRepositoryCollaborators(String repositoryName) {
+        publish(REPOSITORY_COLLABORATORS, repositoryName);
+        repositoryCollaboratorsCache.invalidate(repositoryName);
+    }
+
+    /**
+     * Drops the members of a team, and the repositories of every user who may
+     * have had or gained access to repositories through it.
+     *
+     * @param organization the login of the organization
+     * @param team the name of the team
+     */
+    void invalidateTeam(String organization, String team) {
+        publish(TEAM, organization, team);
+        dropTeam(organization, team);
+    }
+
+    /**
+     * Applies an invalidation published by another controller.
+     *
+     * @param invalidation the invalidation, as published
+     */
+    void apply(String invalidation) {
+        String[] fields = invalidation.split("\t", -1);
+        switch (fields[0]) {
+            case USER:
+                dropUser(fields[1]);
+                break;
+            case USER_REPOSITORIES:
+                dropUserRepositories(fields[1]);
+                break;
+            case REPOSITORY:
+                dropRepository(fields[1], fields.length < 3 || Boolean.parseBoolean(fields[2]));
+                break;
+            case REPOSITORY_COLLABORATORS:
+                repositoryCollaboratorsCache.invalidate(fields[1]);
+                break;
+            case TEAM:
+                dropTeam(fields[1], fields[2]);
+                break;
+            default:
+                LOGGER.log(Level.FINE, "Ignoring unknown invalidation {0}", invalidation);
+        }
+    }
+
+    private static void publish(String... fields) {
+        GithubCacheBackend backend = GithubCacheBackend.current();
+        if (backend != null) {
+            StringBuilder invalidation = new StringBuilder();
+            for (String field : fields) {
+                invalidation.append(invalidation.length() == 0 ? "" : "\t").append(field);
+            }
+            try {
+                backend.publish(invalidation.toString());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not publish the invalidation " + invalidation
+                        + " to the other controllers", e);
+            }
+        }
+    }
+
+    /**
+     * Records the invalidation of an entry of one of the {@link #PERSISTED}
+     * caches and removes the entry from the backend.
+     */
+    private void invalidated(String cache, String key) {
+        GithubCacheBackend backend = GithubCacheBackend.current();
+        // published or polled by now, so the backend sequence covers this invalidation
+        invalidations.get(cache).put(key, new Invalidation(generation.incrementAndGet(),
+                backend != null ? backend.sequence() : 0, System.nanoTime()));
+        if (backend != null) {
+            try {
+                backend.remove(cache, key);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not remove shared " + cache + " of " + key, e);
+            }
+        }
+    }
+
+    /*
+     * Decisions are invalidated after the entries they were made from are
+     * dropped, see GithubDecisionCache, and only for the users and repositories
+     * concerned.
+     */
+
+    private void dropUser(String user) {
+        userOrganizationCache.invalidate(user);
+        invalidated(GithubCacheSpec.ORGANIZATIONS, user);
+        dropUserRepositories(user);
+    }
+
+    private void dropUserRepositories(String user) {
+        repositoriesByUserCache.invalidate(user);
+        invalidated(GithubCacheSpec.REPOSITORIES, user);
+        repositoryScanCache.invalidate(user);
+        String prefix = user + ":";
+        for (Iterator<String> it = repositoryPermissionCache.asMap().keySet().iterator(); it.hasNext();) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        GithubDecisionCache.invalidateUser(user);
+    }
+
+    private void dropRepository(String repositoryName, boolean ownerMembersAffected) {
+        publicRepositoryCache.invalidate(repositoryName);
+        repositoryCollaboratorsCache.invalidate(repositoryName);
+        String suffix = ":" + repositoryName;
+        for (Iterator<String> it = repositoryPermissionCache.asMap().keySet().iterator(); it.hasNext();) {
+            if (it.next().endsWith(suffix)) {
+                it.remove();
+            }
+        }
+        Set<String> users = new HashSet<String>();
+        if (ownerMembersAffected) {
+            int slash = repositoryName.indexOf('/');
+            String owner = slash < 0 ? repositoryName : repositoryName.substring(0, slash);
+            for (Map.Entry<String, Set<String>> entry : userOrganizationCache.asMap().entrySet()) {
+                if (entry.getValue().contains(owner)) {
+                    users.add(entry.getKey());
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : repositoriesByUserCache.asMap().entrySet()) {
+            if (entry.getValue().contains(repositoryName)) {
+                users.add(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, RepositoryScan> entry : repositoryScanCache.asMap().entrySet()) {
+            if (entry.getValue().names.contains(repositoryName)) {
+                users.add(entry.getKey());
+            }
+        }
+        for (String user : users) {
+            dropUserRepositories(user);
+        }
+        GithubDecisionCache.invalidateRepository(repositoryName);
+    }
+
+    private void dropTeam(String organization, String team) {
+        String group = organization + GithubOAuthGroupDetails.ORG_TEAM_SEPARATOR + team;
+        Set<String> members = teamMembersCache.getIfPresent(group);
+        teamMembersCache.invalidate(group);
+        invalidated(GithubCacheSpec.TEAM_MEMBERS, group);
+        if (members != null) {
+            for (String member : members) {
+                dropUserRepositories(member);
+            }
+        } else {
+            for (Map.Entry<String, Set<String>> entry : userOrganizationCache.asMap().entrySet()) {
+                if (entry.getValue().contains(organization)) {
+                    dropUserRepositories(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a repository set dropped from its cache, and compacts the
+     * dictionary in the background once about as many sets were dropped as it
+     * held at the previous compaction.  Compacting copies every set, so it
+     * happens at most once per repository cache lifetime, like the refreshes
+     * which load every set again.
+     */
+    private void repositorySetDropped() {
+        if (droppedSets.incrementAndGet() > compactedSets
+                && System.currentTimeMillis() - compactedAt >= maximumAgeMillis(GithubCacheSpec.REPOSITORIES)
+                && compacting.compareAndSet(false, true)) {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compactRepositoryNames();
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Moves the sets still cached to a new dictionary, so that the names only
+     * dropped sets held can be collected.  A set made with the previous
+     * dictionary while this runs moves at the next compaction.
+     */
+    void compactRepositoryNames() {
+        GithubRepositorySet.Dictionary compacted = new GithubRepositorySet.Dictionary();
+        repositoryNames = compacted;
+        long sets = 0;
+        for (Set<String> names : repositoriesByUserCache.asMap().values()) {
+            if (names instanceof GithubRepositorySet) {
+                ((GithubRepositorySet) names).moveTo(compacted);
+                sets++;
+            }
+        }
+        compactedSets = sets;
+        droppedSets.set(0);
+        compactedAt = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "Compacted the repository names of {0} users to {1} names",
+                new Object[] {sets, compacted.size()});
+    }
+
+    void invalidateAll() {
+        repositoryNames = new GithubRepositorySet.Dictionary();
+        userOrganizationCache.invalidateAll();
+        repositoryCollaboratorsCache.invalidateAll();
+        repositoriesByUserCache.invalidateAll();
+        repositoryScanCache.invalidateAll();
+        publicRepositoryCache.invalidateAll();
+        usersByIdCache.invalidateAll();
+        repositoryPermissionCache.invalidateAll();
+        teamMembersCache.invalidateAll();
+        refreshTokens.invalidateAll();
+        for (ConcurrentMap<String, Invalidation> invalidated : invalidations.values()) {
+            invalidated.clear();
+        }
+        GithubDecisionCache.invalidateAll();
+    }
+
+    /**
+     * @return the dictionary new repository sets are made with
+     */
+    GithubRepositorySet.Dictionary repositoryNames() {
+        return repositoryNames;
+    }
+
+    /**
+     * @return hit, miss, load and eviction statistics of each cache, by cache name
+     */
+    Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<String, CacheStats>();
+        stats.put(GithubCacheSpec.ORGANIZATIONS, userOrganizationCache.stats());
+        stats.put(GithubCacheSpec.REPOSITORY_COLLABORATORS, repositoryCollaboratorsCache.stats());
+        stats.put(GithubCacheSpec.REPOSITORIES, repositoriesByUserCache.stats());
+        stats.put(GithubCacheSpec.PUBLIC_REPOSITORIES, publicRepositoryCache.stats());
+        stats.put(GithubCacheSpec.USERS, usersByIdCache.stats());
+        stats.put(GithubCacheSpec.REPOSITORY_PERMISSIONS, repositoryPermissionCache.stats());
+        stats.put(GithubCacheSpec.TEAM_MEMBERS, teamMembersCache.stats());
+        return stats;
+    }
+
+    /**
+     * @return the number of entries of each cache, by cache name
+     */
+    Map<String, Long> sizes() {
+        Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        sizes.put(GithubCacheSpec.ORGANIZATIONS, userOrganizationCache.size());
+        sizes.put(GithubCacheSpec.REPOSITORY_COLLABORATORS, repositoryCollaboratorsCache.size());
+        sizes.put(GithubCacheSpec.REPOSITORIES, repositoriesByUserCache.size());
+        sizes.put(GithubCacheSpec.PUBLIC_REPOSITORIES, publicRepositoryCache.size());
+        sizes.put(GithubCacheSpec.USERS, usersByIdCache.size());
+        sizes.put(GithubCacheSpec.REPOSITORY_PERMISSIONS, repositoryPermissionCache.size());
+        sizes.put(GithubCacheSpec.TEAM_MEMBERS, teamMembersCache.size());
+        return sizes;
+    }
+
+    private CacheBuilder<Object, Object> builder(String cache, boolean refreshing) {
+        GithubCacheSpec.Settings settings = spec.get(cache);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        final ConcurrentMap<String, Long> times = loadTimes.get(cache);
+        builder.removalListener(new RemovalListener<Object, Object>() {
+            @Override
+            public void onRemoval(RemovalNotification<Object, Object> notification) {
+                if (times != null && notification.getCause() != RemovalCause.REPLACED) {
+                    times.remove(notification.getKey());
+                }
+                if (notification.getValue() instanceof GithubRepositorySet) {
+                    repositorySetDropped();
+                }
+            }
+        });
+        if (refreshing) {
+            builder.refreshAfterWrite(settings.expireAfterWriteSeconds, TimeUnit.SECONDS)
+                    .expireAfterWrite(2 * settings.expireAfterWriteSeconds, TimeUnit.SECONDS);
+        } else {
+            builder.expireAfterWrite(settings.expireAfterWriteSeconds, TimeUnit.SECONDS);
+        }
+        if (settings.maximumSize >= 0) {
+            builder.maximumSize(settings.maximumSize);
+        }
+        return builder;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private CacheBuilder<String, Set<String>> setCache(String cache, boolean refreshing) {
+        CacheBuilder<Object, Object> builder = builder(cache, refreshing);
+        long maximumWeight = spec.get(cache).maximumWeight;
+        if (maximumWeight >= 0) {
+            return builder.maximumWeight(maximumWeight).weigher(SET_SIZE);
+        }
+        return (CacheBuilder) builder;
+    }
+
+    /**
+     * What a controller knew when it started fetching a value from GitHub.
+     */
+    static final class Fetch {
+        /** In milliseconds since the epoch, only used for the age of the value. */
+        final long time;
+        /** The {@link GithubCaches#generation} of this controller. */
+        final long generation;
+        /** The {@link GithubCacheBackend#sequence()} of this controller. */
+        final long sequence;
+
+        Fetch(long time, long generation, long sequence) {
+            this.time = time;
+            this.generation = generation;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The last invalidation of an entry, ordered against fetches by
+     * {@link Fetch#generation} on this controller and by
+     * {@link GithubCacheBackend.Entry#sequence} against the entries other
+     * controllers shared.
+     */
+    private static final class Invalidation {
+        final long generation;
+        final long sequence;
+        /** In {@link System#nanoTime()}, only used to forget the invalidation. */
+        final long nanoTime;
+
+        Invalidation(long generation, long sequence, long nanoTime) {
+            this.generation = generation;
+            this.sequence = sequence;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    /**
+     * Loads a per user cache entry with the token of that user.  Reloads run on
+     * {@link #refreshExecutor} so the request which finds an entry due for refresh
+     * gets the old value instead of waiting on GitHub.
+     */
+    abstract static class RefreshingLoader extends CacheLoader<String, Set<String>> {
+
+        private final GithubCaches caches;
+        private final String cache;
+
+        RefreshingLoader(GithubCaches caches, String cache) {
+            this.caches = caches;
+            this.cache = cache;
+        }
+
+        abstract Set<String> fetch(GithubAuthenticationToken token) throws IOException;
+
+        @Override
+        public Set<String> load(String userName) throws Exception {
+            Set<String> value = caches.loadShared(cache, userName);
+            if (value == null) {
+                Fetch start = caches.startFetch();
+                value = fetch(tokenFor(userName));
+                caches.loaded(cache, userName, value, start);
+            }
+            return value;
+        }
+
+        @Override
+        public ListenableFuture<Set<String>> reload(final String userName, final Set<String> oldValue)
+                throws Exception {
+            final GithubAuthenticationToken token = refreshTokens.getIfPresent(userName);
+            if (token == null) {
+                // e.g. a restored entry, kept as it is until its user logs in again
+                LOGGER.log(Level.FINE, "No token to refresh the {0} of {1} with", new Object[] {cache, userName});
+                return Futures.immediateFuture(oldValue);
+            }
+            final ListenableFutureTask<Set<String>> task = ListenableFutureTask.create(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    Fetch start = caches.startFetch();
+                    Set<String> value = fetch(token);
+                    caches.loaded(cache, userName, value, start);
+                    // an entry invalidated meanwhile is not refreshed with the value
+                    if (!value.equals(oldValue) && !caches.invalidatedSince(cache, userName, start)) {
+                        // stored before the decisions are invalidated, rather than once this returns
+                        caches.persisted(cache).put(userName, value);
+                        GithubDecisionCache.invalidateUser(userName);
+                    }
+                    return value;
+                }
+            });
+            long delay = GithubRateLimits.INSTANCE.holdBackMillis(token.getAccessToken());
+            if (delay > 0) {
+                // the old value is served meanwhile, unless it expires first
+                LOGGER.log(Level.FINE, "Holding back the refresh of {0} for {1} ms, the rate limit of {2} is low",
+                        new Object[] {cache, delay, userName});
+                delayExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        refreshExecutor.execute(task);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } else {
+                refreshExecutor.execute(task);
+            }
+            return task;
+        }
+
+        private static GithubAuthenticationToken tokenFor(String userName) {
+            GithubAuthenticationToken token = refreshTokens.getIfPresent(userName);
+            if (token == null) {
+                throw new IllegalStateException("No token to load the cache for user " + userName);
+            }
+            return token;
+        }
+    }
+
+    private static ExecutorService createRefreshExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "GithubAuthenticationToken.refresh"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubCaches.class.getName());
+}
@@ -0,0 +1,126 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import hudson.Util;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out a single {@link GitHub} client per GitHub server and OAuth token.
+ *
+ * Every session of the same user shares one client instead of building its own,
+ * and clients which have not been used for a while are dropped.  The token
+ * itself is never used as a key, only its digest.
+ */
+final class GithubClientRegistry {
+
+    /**
+     * Minutes an unused client is kept before it is evicted.
+     */
+    static final long IDLE_EXPIRY_MINUTES =
+            Long.getLong(GithubClientRegistry.class.getName() + ".idleExpiryMinutes", 30);
+
+    private static final Cache<String, GitHub> clients =
+            CacheBuilder.newBuilder().expireAfterAccess(IDLE_EXPIRY_MINUTES, TimeUnit.MINUTES).build();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private GithubClientRegistry() {
+    }
+
+    /**
+     * Gets the shared client for a credential, creating it on first use.
+     * Concurrent callers for the same credential all receive the same instance.
+     *
+     * @param githubServer the GitHub API URI
+     * @param accessToken the OAuth access token
+     * @return the client
+     * @throws IOException if the client could not be built
+     */
+    static GitHub get(final String githubServer, final String accessToken) throws IOException {
+        try {
+            return clients.get(keyOf(githubServer, accessToken), new Callable<GitHub>() {
+                @Override
+                public GitHub call() throws Exception {
+                    return GitHubBuilder.fromEnvironment()
+                            .withEndpoint(githubServer)
+                            .withOAuthToken(accessToken)
+                            .withConnector(GithubHttpConnector.get())
+                            .withRateLimitHandler(GithubRateLimits.HANDLER)
+                            .build();
+                }
+            });
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException("Could not create GitHub client for " + githubServer, e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Drops the client for a credential, e.g. because the token is no longer valid.
+     *
+     * @param githubServer the GitHub API URI
+     * @param accessToken the OAuth access token
+     */
+    static void invalidate(String githubServer, String accessToken) {
+        clients.invalidate(keyOf(githubServer, accessToken));
+    }
+
+    /**
+     * Necessary for testing
+     */
+    static void clear() {
+        clients.invalidateAll();
+    }
+
+    static String keyOf(String githubServer, String accessToken) {
+        return githubServer + "#" + sha256Hex(accessToken);
+    }
+
+    static String sha256Hex(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Util.toHexString(md.digest(String.valueOf(value).getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to provide SHA-256
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.security.Permission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Final outcomes of {@link GithubRequireOrganizationMembershipACL#hasPermission},
+ * shared by every request, so that users navigating the same jobs again skip
+ * the ACL and the membership caches behind it.
+ *
+ * Each decision is stamped with the generation read before it was made.  A
+ * change bumps the generation and records it against what it affects: a
+ * user whose organizations or repositories changed, a repository whose
+ * visibility changed, or everything when the authorization strategy, the
+ * security realm or the caches themselves are configured.  Decisions older
+ * than what they depend on are misses; the others are unaffected.  Decisions
+ * also expire on their own, so that changes on GitHub which no webhook
+ * reports are picked up a few minutes after the membership caches pick them up.
+ */
+final class GithubDecisionCache {
+
+    private static final long MAXIMUM_SIZE =
+            Long.getLong(GithubDecisionCache.class.getName() + ".maximumSize", 100000);
+
+    private static final long EXPIRE_AFTER_WRITE_SECONDS =
+            Long.getLong(GithubDecisionCache.class.getName() + ".expireAfterWriteSeconds", 300);
+
+    private static final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The generation of the last change to everything, Long.MAX_VALUE while one is being recorded.
+     */
+    private static volatile long invalidated;
+
+    /**
+     * The generation of the last change of each user and each repository, kept
+     * well past the decisions made before it so slow checks cannot outlive it.
+     */
+    private static final Cache<String, Long> invalidatedUsers = newInvalidations();
+    private static final Cache<String, Long> invalidatedScopes = newInvalidations();
+
+    private static final Object LOCK = new Object();
+
+    private static final Cache<Key, Decision> decisions = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private GithubDecisionCache() {
+    }
+
+    private static Cache<String, Long> newInvalidations() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(Math.max(4 * EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.HOURS.toSeconds(1)),
+                        TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the current generation, to be read before a decision is made
+     *         and passed to {@link #put} with it
+     */
+    static long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Makes every decision made so far a miss.  Called after the change.
+     */
+    static void invalidateAll() {
+        synchronized (LOCK) {
+            // no decision is served until the new generation is recorded
+            invalidated = Long.MAX_VALUE;
+            invalidated = generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Makes the decisions made so far for a user a miss.  Called after the change.
+     *
+     * @param user the login of the user
+     */
+    static void invalidateUser(String user) {
+        invalidate(invalidatedUsers, user);
+    }
+
+    /**
+     * Makes the decisions made so far on the jobs of a repository a miss.
+     * Called after the change.
+     *
+     * @param repositoryName the repository in owner/name form, a scope of
+     *                       {@link GithubRequireOrganizationMembershipACL#decisionScope()}
+     */
+    static void invalidateRepository(String repositoryName) {
+        invalidate(invalidatedScopes, repositoryName);
+    }
+
+    private static void invalidate(Cache<String, Long> invalidations, String key) {
+        synchronized (LOCK) {
+            invalidations.put(key, Long.MAX_VALUE);
+            invalidations.put(key, generation.incrementAndGet());
+        }
+    }
+
+    /**
+     * @param configuration the configuration of the ACL making the decision
+     * @param user the login of the user
+     * @param permission the permission
+     * @param scope what the decision applies to besides the configuration, see
+     *              {@link GithubRequireOrganizationMembershipACL}
+     * @return the decision, or null if there is none made since the last change it depends on
+     */
+    static Boolean get(Object configuration, String user, Permission permission, String scope) {
+        Decision decision = decisions.getIfPresent(new Key(configuration, user, permission, scope));
+        if (decision == null || !isCurrent(user, scope, decision.generation)) {
+            return null;
+        }
+        return decision.granted;
+    }
+
+    /**
+     * @param generation the generation read before the decision was made, so
+     *                   that a decision racing an invalidation is never served
+     */
+    static void put(Object configuration, String user, Permission permission, String scope,
+                    boolean granted, long generation) {
+        if (isCurrent(user, scope, generation)) {
+            decisions.put(new Key(configuration, user, permission, scope), new Decision(granted, generation));
+        }
+    }
+
+    private static boolean isCurrent(String user, String scope, long generation) {
+        if (generation < invalidated) {
+            return false;
+        }
+        Long userInvalidated = invalidatedUsers.getIfPresent(user);
+        if (userInvalidated != null && generation < userInvalidated) {
+            return false;
+        }
+        Long scopeInvalidated = invalidatedScopes.getIfPresent(scope);
+        return scopeInvalidated == null || generation >= scopeInvalidated;
+    }
+
+    static long size() {
+        return decisions.size();
+    }
+
+    static void clear() {
+        decisions.invalidateAll();
+        invalidateAll();
+    }
+
+    private static final class Key {
+        /** Compared by identity: each configuration of the strategy has its own. */
+        private final Object configuration;
+        private final String user;
+        private final Permission permission;
+        private final String scope;
+
+        Key(Object configuration, String user, Permission permission, String scope) {
+            this.configuration = configuration;
+            this.user = user;
+            this.permission = permission;
+            this.scope = scope;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return configuration == key.configuration && permission == key.permission
+                    && user.equals(key.user) && scope.equals(key.scope);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(configuration);
+            result = 31 * result + user.hashCode();
+            result = 31 * result + System.identityHashCode(permission);
+            return 31 * result + scope.hashCode();
+        }
+    }
+
+    private static final class Decision {
+        final boolean granted;
+        final long generation;
+
+        Decision(boolean granted, long generation) {
+            this.granted = granted;
+            this.generation = generation;
+        }
+    }
+}
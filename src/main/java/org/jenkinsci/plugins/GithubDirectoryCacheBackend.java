@@ -0,0 +1,285 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.Extension;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the caches through a directory every controller mounts, such as an
+ * NFS export, configured with the
+ * {@code org.jenkinsci.plugins.GithubDirectoryCacheBackend.directory} system property.
+ *
+ * Each entry is a file {@code CACHE/KEY}, replaced atomically.  Each
+ * invalidation is a file {@code invalidations/SEQUENCE}, claimed by hard
+ * linking it into place, which fails if another controller claimed that
+ * number first.  The other controllers read it, and delete it once they have
+ * seen it for {@link #RETENTION_MINUTES}; the highest one is kept so that
+ * numbers keep growing.  Only the clock of each controller is used to tell
+ * how long it has seen a file, so controllers need not agree on the time.
+ */
+@Extension
+public class GithubDirectoryCacheBackend extends GithubCacheBackend {
+
+    /**
+     * Minutes invalidations are kept for controllers which poll late.
+     */
+    static final long RETENTION_MINUTES =
+            Long.getLong(GithubDirectoryCacheBackend.class.getName() + ".retentionMinutes", 10);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String INVALIDATIONS = "invalidations";
+
+    private final File directory;
+    private final String controller = UUID.randomUUID().toString();
+    private final AtomicLong tmpSequence = new AtomicLong();
+
+    /**
+     * The highest invalidation read by {@link #poll()}.
+     */
+    private long polled;
+
+    /**
+     * The highest invalidation published or polled, see {@link #sequence()}.
+     */
+    private volatile long sequence;
+
+    /**
+     * When each invalidation still in the directory was first seen, by number,
+     * in {@link System#nanoTime()}.
+     */
+    private final Map<Long, Long> seen = new HashMap<Long, Long>();
+
+    public GithubDirectoryCacheBackend() {
+        this(directoryOf(System.getProperty(GithubDirectoryCacheBackend.class.getName() + ".directory")));
+    }
+
+    GithubDirectoryCacheBackend(File directory) {
+        this.directory = directory;
+    }
+
+    private static File directoryOf(String path) {
+        return path == null || path.trim().isEmpty() ? null : new File(path.trim());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    @Override
+    public Entry get(String cache, String key) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(fileOf(cache, key))))) {
+            long loadTime = in.readLong();
+            long entrySequence = in.readLong();
+            int size = in.readInt();
+            Set<String> names = new HashSet<String>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                names.add(in.readUTF());
+            }
+            return new Entry(names, loadTime, entrySequence);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String cache, String key, Entry entry) throws IOException {
+        File file = fileOf(cache, key);
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+        // unique, as other controllers may write the same entry at the same time
+        File tmp = new File(dir, file.getName() + "." + controller + "-" + tmpSequence.incrementAndGet() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeLong(entry.loadTime);
+                out.writeLong(entry.sequence);
+                out.writeInt(entry.names.size());
+                for (String name : entry.names) {
+                    out.writeUTF(name);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    @Override
+    public void remove(String cache, String key) throws IOException {
+        Files.deleteIfExists(fileOf(cache, key).toPath());
+    }
+
+    @Override
+    public void publish(String invalidation) throws IOException {
+        File dir = new File(directory, INVALIDATIONS);
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File tmp = new File(dir, "." + controller + "-" + tmpSequence.incrementAndGet() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), (controller + "\n" + invalidation).getBytes(UTF_8));
+            long number = Math.max(highest(dir.list()), sequence) + 1;
+            while (true) {
+                try {
+                    // visible to other controllers only once complete, and under a number nobody else has
+                    Files.createLink(new File(dir, nameOf(number)).toPath(), tmp.toPath());
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    number++;
+                }
+            }
+            raiseSequence(number);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    @Override
+    public synchronized List<String> poll() throws IOException {
+        File dir = new File(directory, INVALIDATIONS);
+        String[] names = dir.list();
+        if (names == null) {
+            return new ArrayList<String>();
+        }
+        Arrays.sort(names);
+        long now = System.nanoTime();
+        long retention = TimeUnit.MINUTES.toNanos(RETENTION_MINUTES);
+        long highest = highest(names);
+        List<String> invalidations = new ArrayList<String>();
+        Set<Long> listed = new HashSet<Long>();
+        for (String name : names) {
+            long number = numberOf(name);
+            if (number < 0) {
+                // being written
+                continue;
+            }
+            listed.add(number);
+            Long firstSeen = seen.get(number);
+            if (firstSeen == null) {
+                seen.put(number, now);
+            } else if (now - firstSeen > retention && number < highest) {
+                Files.deleteIfExists(new File(dir, name).toPath());
+                continue;
+            }
+            if (number <= polled) {
+                continue;
+            }
+            try {
+                String content = new String(Files.readAllBytes(new File(dir, name).toPath()), UTF_8);
+                int newline = content.indexOf('\n');
+                if (newline >= 0 && !content.substring(0, newline).equals(controller)) {
+                    invalidations.add(content.substring(newline + 1));
+                }
+            } catch (NoSuchFileException e) {
+                // deleted by another controller meanwhile
+            }
+            polled = number;
+        }
+        seen.keySet().retainAll(listed);
+        raiseSequence(polled);
+        return invalidations;
+    }
+
+    @Override
+    public long sequence() {
+        return sequence;
+    }
+
+    private synchronized void raiseSequence(long number) {
+        if (number > sequence) {
+            sequence = number;
+        }
+    }
+
+    private static String nameOf(long number) {
+        // sorted by number
+        return String.format("%019d", number);
+    }
+
+    /**
+     * @return the number of an invalidation file, or -1 if the file is not one
+     */
+    private static long numberOf(String name) {
+        if (name.startsWith(".")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long highest(String[] names) {
+        long highest = 0;
+        if (names != null) {
+            for (String name : names) {
+                highest = Math.max(highest, numberOf(name));
+            }
+        }
+        return highest;
+    }
+
+    private File fileOf(String cache, String key) {
+        try {
+            // keys hold no characters which need more than percent encoding, and never start with a dot
+            return new File(new File(directory, cache), URLEncoder.encode(key, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.base.Throwables;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs independent GitHub calls, such as one per organization, on a bounded
+ * pool so that a cold lookup takes as long as the slowest call rather than
+ * the sum of all of them.
+ *
+ * Calls must not fan out again themselves, as they would wait on the pool
+ * they are running on.
+ */
+final class GithubFanOut {
+
+    /**
+     * Number of threads making GitHub calls in parallel, 1 to make them one after the other.
+     */
+    private static final int THREADS =
+            Integer.getInteger(GithubAuthenticationToken.class.getName() + ".fanOutThreads", 8);
+
+    /**
+     * How long a caller waits for all of its calls before giving up.
+     */
+    private static final long TIMEOUT_SECONDS =
+            Long.getLong(GithubAuthenticationToken.class.getName() + ".fanOutTimeoutSeconds", 120);
+
+    private static final ExecutorService executor = createExecutor();
+
+    private GithubFanOut() {
+    }
+
+    /**
+     * A call made for each item.
+     */
+    interface Call<T, R> {
+        R call(T item) throws IOException;
+    }
+
+    /**
+     * Makes a call for each item in parallel.
+     *
+     * @param items the items
+     * @param call the call to make for each item
+     * @return the results, in the iteration order of the items
+     * @throws IOException if any of the calls failed or they did not all complete in time,
+     *         in which case the remaining calls are cancelled
+     */
+    static <T, R> List<R> map(Collection<? extends T> items, final Call<? super T, ? extends R> call)
+            throws IOException {
+        List<R> results = new ArrayList<R>(items.size());
+        if (items.size() <= 1 || executor == null) {
+            for (T item : items) {
+                results.add(call.call(item));
+            }
+            return results;
+        }
+
+        List<Future<? extends R>> futures = new ArrayList<Future<? extends R>>(items.size());
+        try {
+            for (final T item : items) {
+                futures.add(executor.submit(new Callable<R>() {
+                    @Override
+                    public R call() throws IOException {
+                        return call.call(item);
+                    }
+                }));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            for (Future<? extends R> future : futures) {
+                results.add(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("GitHub did not answer " + items.size() + " calls within "
+                    + TIMEOUT_SECONDS + " seconds", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for GitHub");
+        } finally {
+            for (Future<? extends R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Starts a single call on the pool, so that the caller can make other calls meanwhile.
+     *
+     * @param call the call
+     * @return the pending result, see {@link #get(Future)}
+     */
+    static <R> Future<R> start(Callable<R> call) {
+        if (executor == null) {
+            FutureTask<R> task = new FutureTask<R>(call);
+            task.run();
+            return task;
+        }
+        return executor.submit(call);
+    }
+
+    /**
+     * Waits for a call started with {@link #start(Callable)}.
+     *
+     * @param future the pending result
+     * @return the result
+     * @throws IOException if the call failed or did not complete in time, in which case it is cancelled
+     */
+    static <R> R get(Future<R> future) throws IOException {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("GitHub did not answer within " + TIMEOUT_SECONDS + " seconds", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for GitHub");
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        if (THREADS <= 1) {
+            return null;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "GithubAuthenticationToken.fanOut"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
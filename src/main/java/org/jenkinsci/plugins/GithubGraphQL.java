@@ -0,0 +1,154 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends queries to the GitHub GraphQL API, for the lookups which the REST
+ * API of github-api can only make one call per item.
+ *
+ * GitHub Enterprise servers without GraphQL answer 404; they are remembered
+ * so that callers fall back to the REST API without asking again.
+ */
+final class GithubGraphQL {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    /**
+     * API URIs of the servers which answered that they have no GraphQL API.
+     */
+    private static final Set<String> restOnly =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * The answer to a query.
+     */
+    static final class Result {
+        /** The fields of the query, null for those which failed. */
+        final JSONObject data;
+        /** The type of the error of each failed top level field, such as NOT_FOUND or FORBIDDEN. */
+        final Map<String, String> errors;
+
+        Result(JSONObject data, Map<String, String> errors) {
+            this.data = data;
+            this.errors = errors;
+        }
+    }
+
+    private GithubGraphQL() {
+    }
+
+    /**
+     * @param githubServer the GitHub API URI
+     * @param accessToken the credential to query with
+     * @param query the query; values must be passed as variables, never spliced into it
+     * @param variables the members of the JSON variables object, quoted with {@link JSONUtils#quote(String)}
+     * @return the answer, or null if the server has no GraphQL API
+     * @throws IOException if the query failed as a whole
+     */
+    static Result query(String githubServer, String accessToken, String query, String variables)
+            throws IOException {
+        if (restOnly.contains(githubServer)) {
+            return null;
+        }
+        String body = "{\"query\": " + JSONUtils.quote(query) + ", \"variables\": {" + variables + "}}";
+        Request request = new Request.Builder()
+                .url(uri(githubServer))
+                .header("Authorization", "token " + accessToken)
+                .post(RequestBody.create(JSON, body))
+                .build();
+        Response response = GithubHttpConnector.get().getClient().newCall(request).execute();
+        String content = response.body().string();
+        if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+            LOGGER.log(Level.INFO, "{0} has no GraphQL API, using the REST API instead", githubServer);
+            restOnly.add(githubServer);
+            return null;
+        }
+        if (response.code() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("GitHub GraphQL query failed with status " + response.code() + ": " + content);
+        }
+
+        JSONObject data;
+        JSONArray errors;
+        try {
+            JSONObject json = JSONObject.fromObject(content);
+            data = json.optJSONObject("data");
+            errors = json.optJSONArray("errors");
+        } catch (JSONException e) {
+            throw new IOException("Unexpected GitHub GraphQL response: " + content, e);
+        }
+        if (data == null) {
+            throw new IOException("GitHub GraphQL query failed: " + errors);
+        }
+        Map<String, String> errorTypes = new HashMap<String, String>();
+        if (errors != null) {
+            for (int i = 0; i < errors.size(); i++) {
+                JSONObject error = errors.optJSONObject(i);
+                JSONArray path = error != null ? error.optJSONArray("path") : null;
+                if (path != null && !path.isEmpty()) {
+                    errorTypes.put(path.optString(0), error.optString("type"));
+                }
+            }
+        }
+        return new Result(data, errorTypes);
+    }
+
+    /**
+     * @param githubServer the REST API URI, {@code https://api.github.com} or
+     *                     {@code https://HOST/api/v3} for GitHub Enterprise
+     * @return the GraphQL API URI
+     */
+    static String uri(String githubServer) {
+        String uri = githubServer.endsWith("/") ? githubServer.substring(0, githubServer.length() - 1) : githubServer;
+        if (uri.endsWith("/api/v3")) {
+            return uri.substring(0, uri.length() - "/v3".length()) + "/graphql";
+        }
+        return uri + "/graphql";
+    }
+
+    static void clear() {
+        restOnly.clear();
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubGraphQL.class.getName());
+}
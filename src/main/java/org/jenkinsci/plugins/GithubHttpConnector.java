@@ -0,0 +1,123 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import jenkins.model.Jenkins;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link HttpConnector} used by every GitHub client of this plugin.
+ *
+ * All clients go through one OkHttp client, so they share its connection pool,
+ * and through one {@link GithubResponseCache} stored under
+ * {@code JENKINS_HOME/caches/github-oauth}.
+ */
+final class GithubHttpConnector implements HttpConnector {
+
+    /**
+     * Size of the on-disk response cache in megabytes, 0 disables it.
+     */
+    static final long CACHE_SIZE_MB =
+            Long.getLong(GithubHttpConnector.class.getName() + ".cacheSizeMB", 50);
+
+    private static final long READ_TIMEOUT_SECONDS =
+            Long.getLong(GithubHttpConnector.class.getName() + ".readTimeoutSeconds", 60);
+
+    private static volatile GithubHttpConnector instance;
+
+    private final OkHttpClient client;
+    private final OkUrlFactory urlFactory;
+
+    private GithubHttpConnector(OkHttpClient client) {
+        this.client = client;
+        this.urlFactory = new OkUrlFactory(client);
+    }
+
+    /**
+     * @return the shared connector
+     */
+    static GithubHttpConnector get() {
+        GithubHttpConnector connector = instance;
+        if (connector == null) {
+            synchronized (GithubHttpConnector.class) {
+                connector = instance;
+                if (connector == null) {
+                    connector = new GithubHttpConnector(createClient());
+                    instance = connector;
+                }
+            }
+        }
+        return connector;
+    }
+
+    private static OkHttpClient createClient() {
+        OkHttpClient client = new OkHttpClient();
+        client.setReadTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // waits for rate limits before a connection is taken from the pool
+        client.interceptors().add(GithubRateLimits.INSTANCE);
+        client.networkInterceptors().add(GithubMetrics.CALL_TIMER);
+        File cacheDir = getCacheDirectory();
+        if (cacheDir != null && CACHE_SIZE_MB > 0) {
+            try {
+                client.networkInterceptors().add(new GithubResponseCache(cacheDir, CACHE_SIZE_MB * 1024 * 1024));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "GitHub response cache disabled, could not use " + cacheDir, e);
+            }
+        }
+        return client;
+    }
+
+    private static File getCacheDirectory() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || jenkins.getRootDir() == null) {
+            return null;
+        }
+        return new File(new File(jenkins.getRootDir(), "caches"), "github-oauth");
+    }
+
+    /**
+     * @return the OkHttp client backing this connector
+     */
+    OkHttpClient getClient() {
+        return client;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return urlFactory.open(url);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubHttpConnector.class.getName());
+}
@@ -0,0 +1,131 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.google.common.cache.CacheStats;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+import jenkins.metrics.api.Metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the GitHub authorization metrics through the metrics plugin, when it is installed.
+ *
+ * <ul>
+ *     <li>{@code github-oauth.api.<endpoint>} - timer of the GitHub calls to each endpoint</li>
+ *     <li>{@code github-oauth.api.errors} - calls which failed or got a 4xx or 5xx answer</li>
+ *     <li>{@code github-oauth.acl.hasPermission} - timer of permission checks</li>
+ *     <li>{@code github-oauth.acl.denied} - permission checks which were denied</li>
+ *     <li>{@code github-oauth.cache.<cache>.*} - hits, misses, hit ratio, evictions and size of each cache</li>
+ *     <li>{@code github-oauth.rateLimit.remaining} - lowest remaining rate limit of any credential</li>
+ * </ul>
+ */
+@Extension(optional = true)
+public class GithubMetricProvider extends MetricProvider {
+
+    private static final String PREFIX = "github-oauth";
+
+    public GithubMetricProvider() {
+        GithubMetrics.setRecorder(new GithubMetrics.Recorder() {
+            @Override
+            public void apiCall(String endpoint, int status, long nanos) {
+                MetricRegistry registry = Metrics.metricRegistry();
+                registry.timer(MetricRegistry.name(PREFIX, "api", endpoint)).update(nanos, TimeUnit.NANOSECONDS);
+                if (status < 0 || status >= 400) {
+                    registry.meter(MetricRegistry.name(PREFIX, "api", "errors")).mark();
+                }
+            }
+
+            @Override
+            public void permissionCheck(long nanos, boolean granted) {
+                MetricRegistry registry = Metrics.metricRegistry();
+                registry.timer(MetricRegistry.name(PREFIX, "acl", "hasPermission")).update(nanos, TimeUnit.NANOSECONDS);
+                if (!granted) {
+                    registry.meter(MetricRegistry.name(PREFIX, "acl", "denied")).mark();
+                }
+            }
+        });
+    }
+
+    @Override
+    public MetricSet getMetricSet() {
+        return new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() {
+                Map<String, Metric> metrics = new HashMap<String, Metric>();
+                for (final String cache : GithubCacheSpec.CACHE_NAMES) {
+                    metrics.put(MetricRegistry.name(PREFIX, "cache", cache, "hits"), new Gauge<Long>() {
+                        @Override
+                        public Long getValue() {
+                            return stats(cache).hitCount();
+                        }
+                    });
+                    metrics.put(MetricRegistry.name(PREFIX, "cache", cache, "misses"), new Gauge<Long>() {
+                        @Override
+                        public Long getValue() {
+                            return stats(cache).missCount();
+                        }
+                    });
+                    metrics.put(MetricRegistry.name(PREFIX, "cache", cache, "hitRatio"), new Gauge<Double>() {
+                        @Override
+                        public Double getValue() {
+                            return stats(cache).hitRate();
+                        }
+                    });
+                    metrics.put(MetricRegistry.name(PREFIX, "cache", cache, "evictions"), new Gauge<Long>() {
+                        @Override
+                        public Long getValue() {
+                            return stats(cache).evictionCount();
+                        }
+                    });
+                    metrics.put(MetricRegistry.name(PREFIX, "cache", cache, "size"), new Gauge<Long>() {
+                        @Override
+                        public Long getValue() {
+                            return GithubCaches.current().sizes().get(cache);
+                        }
+                    });
+                }
+                metrics.put(MetricRegistry.name(PREFIX, "rateLimit", "remaining"), new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return GithubRateLimits.INSTANCE.getMinimumRemaining();
+                    }
+                });
+                return metrics;
+            }
+        };
+    }
+
+    private static CacheStats stats(String cache) {
+        return GithubCaches.current().stats().get(cache);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Where the plugin reports GitHub calls and permission checks.
+ *
+ * Nothing is recorded unless the optional metrics plugin is installed, in
+ * which case {@link GithubMetricProvider} installs a {@link Recorder}.  This
+ * class does not depend on the metrics plugin so that it can always be loaded.
+ */
+final class GithubMetrics {
+
+    /**
+     * Receives what is measured.
+     */
+    interface Recorder {
+        /**
+         * @param endpoint the method and path of the call, with names and ids replaced by {@code {}}
+         * @param status the status code of the response, or -1 if the call failed
+         * @param nanos how long the call took
+         */
+        void apiCall(String endpoint, int status, long nanos);
+
+        /**
+         * @param nanos how long {@link GithubRequireOrganizationMembershipACL#hasPermission} took
+         * @param granted whether the permission was granted
+         */
+        void permissionCheck(long nanos, boolean granted);
+    }
+
+    /**
+     * Path segments kept as they are in endpoint names.
+     */
+    private static final Set<String> RESOURCES = new HashSet<String>(Arrays.asList(
+            "user", "users", "orgs", "organizations", "repos", "teams", "members", "public_members",
+            "memberships", "collaborators", "permission", "emails", "rate_limit", "graphql"));
+
+    /**
+     * Times every call made through {@link GithubHttpConnector}.
+     */
+    static final Interceptor CALL_TIMER = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Recorder recorder = GithubMetrics.recorder;
+            if (recorder == null) {
+                return chain.proceed(chain.request());
+            }
+            Request request = chain.request();
+            long start = System.nanoTime();
+            int status = -1;
+            try {
+                Response response = chain.proceed(request);
+                status = response.code();
+                return response;
+            } finally {
+                recorder.apiCall(endpointOf(request.method(), request.url().getPath()), status,
+                        System.nanoTime() - start);
+            }
+        }
+    };
+
+    private static volatile Recorder recorder;
+
+    private GithubMetrics() {
+    }
+
+    static void setRecorder(Recorder recorder) {
+        GithubMetrics.recorder = recorder;
+    }
+
+    static void permissionChecked(long nanos, boolean granted) {
+        Recorder recorder = GithubMetrics.recorder;
+        if (recorder != null) {
+            recorder.permissionCheck(nanos, granted);
+        }
+    }
+
+    /**
+     * Names an endpoint so that calls for different users, organizations or
+     * repositories add up, e.g. {@code GET /orgs/{}/repos}.
+     *
+     * @param method the HTTP method
+     * @param path the path of the URL, with or without the GitHub Enterprise {@code /api/v3} prefix
+     * @return the endpoint name
+     */
+    static String endpointOf(String method, String path) {
+        if (path.startsWith("/api/v3/")) {
+            path = path.substring("/api/v3".length());
+        } else if (path.equals("/api/graphql")) {
+            path = "/graphql";
+        }
+        StringBuilder endpoint = new StringBuilder(method).append(' ');
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            endpoint.append('/').append(RESOURCES.contains(segment) ? segment : "{}");
+        }
+        if (endpoint.charAt(endpoint.length() - 1) == ' ') {
+            endpoint.append('/');
+        }
+        return endpoint.toString();
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.model.Job;
+import org.jenkinsci.plugins.workflow.cps.CpsScmFlowDefinition;
+import org.jenkinsci.plugins.workflow.flow.FlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+
+/**
+ * Finds the repository of Pipeline jobs from the SCM their Jenkinsfile is
+ * read from, which is part of the job configuration and so known before the
+ * first build.
+ *
+ * Only used when the workflow-job and workflow-cps plugins are installed,
+ * which this plugin does not require.
+ */
+final class GithubPipelineRepositories {
+
+    private GithubPipelineRepositories() {
+    }
+
+    /**
+     * @param job a job
+     * @return the repository holding the Jenkinsfile of the job in owner/name form,
+     *         or null if the job is not a Pipeline job defined in SCM or its SCM is not on GitHub
+     */
+    static String repositoryOf(Job<?, ?> job) {
+        if (!(job instanceof WorkflowJob)) {
+            return null;
+        }
+        FlowDefinition definition = ((WorkflowJob) job).getDefinition();
+        if (!(definition instanceof CpsScmFlowDefinition)) {
+            return null;
+        }
+        return GithubRepositoryIndex.resolve(((CpsScmFlowDefinition) definition).getScm());
+    }
+}
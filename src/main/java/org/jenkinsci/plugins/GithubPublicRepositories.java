@@ -0,0 +1,161 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+import org.kohsuke.github.GHRepository;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds out which repositories are public, many repositories per GitHub
+ * GraphQL query.
+ *
+ * Any credential can see every public repository, so a repository the
+ * credential cannot find is private, or does not exist, for everybody.  Only
+ * such definite answers are returned: a repository which could not be looked
+ * up, for example because of a network error or an organization restricting
+ * access, is left out so that it is not cached.
+ *
+ * A single repository, and every repository on GitHub Enterprise servers
+ * without GraphQL, is looked up through the REST API instead.
+ */
+final class GithubPublicRepositories {
+
+    /**
+     * Number of repositories looked up by a single query.
+     */
+    static final int BATCH_SIZE =
+            Integer.getInteger(GithubPublicRepositories.class.getName() + ".batchSize", 50);
+
+    private GithubPublicRepositories() {
+    }
+
+    /**
+     * @param githubServer the GitHub API URI
+     * @param accessToken the credential to look the repositories up with
+     * @param repositoryNames repositories in owner/name form
+     * @return whether each repository is public, for the repositories with a definite answer
+     * @throws IOException if GitHub could not be asked at all
+     */
+    static Map<String, Boolean> lookup(final String githubServer, final String accessToken,
+                                       Collection<String> repositoryNames) throws IOException {
+        List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> batch = null;
+        for (String repositoryName : repositoryNames) {
+            if (repositoryName.indexOf('/') < 0) {
+                continue;
+            }
+            if (batch == null || batch.size() >= BATCH_SIZE) {
+                batch = new ArrayList<String>();
+                batches.add(batch);
+            }
+            batch.add(repositoryName);
+        }
+        if (batches.size() == 1 && batches.get(0).size() == 1) {
+            // the response cache revalidates a single repository for free
+            return lookupEach(githubServer, accessToken, batches.get(0));
+        }
+        Map<String, Boolean> publicRepositories = new HashMap<String, Boolean>();
+        for (Map<String, Boolean> found : GithubFanOut.map(batches,
+                new GithubFanOut.Call<List<String>, Map<String, Boolean>>() {
+                    @Override
+                    public Map<String, Boolean> call(List<String> batch) throws IOException {
+                        Map<String, Boolean> found = query(githubServer, accessToken, batch);
+                        return found != null ? found : lookupEach(githubServer, accessToken, batch);
+                    }
+                })) {
+            publicRepositories.putAll(found);
+        }
+        return publicRepositories;
+    }
+
+    /**
+     * @return the answers, or null if the server has no GraphQL API
+     */
+    private static Map<String, Boolean> query(String githubServer, String accessToken, List<String> batch)
+            throws IOException {
+        // names are passed as variables, never spliced into the query
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder variables = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            String repositoryName = batch.get(i);
+            int slash = repositoryName.indexOf('/');
+            String separator = i == 0 ? "" : ", ";
+            parameters.append(separator).append("$o").append(i).append(": String!, $n").append(i)
+                    .append(": String!");
+            fields.append(" r").append(i).append(": repository(owner: $o").append(i).append(", name: $n")
+                    .append(i).append(") { isPrivate }");
+            String owner = JSONUtils.quote(repositoryName.substring(0, slash));
+            String name = JSONUtils.quote(repositoryName.substring(slash + 1));
+            variables.append(separator).append("\"o").append(i).append("\": ").append(owner)
+                    .append(", \"n").append(i).append("\": ").append(name);
+        }
+        GithubGraphQL.Result result = GithubGraphQL.query(githubServer, accessToken,
+                "query(" + parameters + ") {" + fields + " }", variables.toString());
+        if (result == null) {
+            return null;
+        }
+        Map<String, Boolean> found = new HashMap<String, Boolean>();
+        for (int i = 0; i < batch.size(); i++) {
+            JSONObject repository = result.data.optJSONObject("r" + i);
+            if (repository != null && repository.has("isPrivate")) {
+                found.put(batch.get(i), !repository.getBoolean("isPrivate"));
+            } else if ("NOT_FOUND".equals(result.errors.get("r" + i))) {
+                found.put(batch.get(i), false);
+            }
+        }
+        return found;
+    }
+
+    private static Map<String, Boolean> lookupEach(String githubServer, String accessToken, List<String> batch)
+            throws IOException {
+        Map<String, Boolean> found = new HashMap<String, Boolean>();
+        for (String repositoryName : batch) {
+            try {
+                GHRepository repository = GithubClientRegistry.get(githubServer, accessToken)
+                        .getRepository(repositoryName);
+                found.put(repositoryName, repository != null && !repository.isPrivate());
+            } catch (FileNotFoundException e) {
+                found.put(repositoryName, false);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not find out whether " + repositoryName + " is public", e);
+            }
+        }
+        return found;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubPublicRepositories.class.getName());
+}
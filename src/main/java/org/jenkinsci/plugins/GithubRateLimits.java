@@ -0,0 +1,245 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.kohsuke.github.RateLimitHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the rate limit budget of each credential from the headers of every
+ * GitHub response.
+ *
+ * Requests made while GitHub asks to back off, through {@code Retry-After} on a
+ * secondary rate limit, wait for a jittered delay first.  When the hourly budget
+ * is exhausted, requests wait for its reset only if it is close, see
+ * {@link #HANDLER}.  Background refreshes are held back while the budget of
+ * their credential is low, so that what is left serves interactive checks.
+ *
+ * This is an application interceptor: a request waits before it takes a pooled
+ * connection, not while holding one.
+ */
+final class GithubRateLimits implements Interceptor {
+
+    /**
+     * Longest a request waits for a rate limit to pass before failing instead.
+     */
+    private static final long MAX_WAIT_SECONDS =
+            Long.getLong(GithubRateLimits.class.getName() + ".maxWaitSeconds", 10);
+
+    /**
+     * Fraction of the hourly budget below which background refreshes are skipped.
+     */
+    private static final int LOW_BUDGET_PERCENT =
+            Integer.getInteger(GithubRateLimits.class.getName() + ".lowBudgetPercent", 10);
+
+    private static final long MAX_JITTER_MILLIS = 1000;
+
+    static final GithubRateLimits INSTANCE = new GithubRateLimits();
+
+    /**
+     * Retries a request which exhausted the hourly budget once the budget is reset,
+     * if that is at most {@code maxWaitSeconds} away, and fails it otherwise.
+     */
+    static final RateLimitHandler HANDLER = new RateLimitHandler() {
+        @Override
+        public void onError(IOException e, HttpURLConnection uc) throws IOException {
+            long reset = uc.getHeaderFieldLong("X-RateLimit-Reset", -1);
+            long wait = reset < 0 ? -1 : TimeUnit.SECONDS.toMillis(reset) - System.currentTimeMillis() + jitter();
+            if (wait < 0 || wait > TimeUnit.SECONDS.toMillis(MAX_WAIT_SECONDS)) {
+                throw e;
+            }
+            // releases the connection of the failed request while waiting
+            InputStream error = uc.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            sleep(wait);
+        }
+    };
+
+    /**
+     * Budget of a credential as last reported by GitHub.
+     */
+    static final class Budget {
+        final int limit;
+        final int remaining;
+        /** When the budget is reset, in milliseconds since the epoch. */
+        final long resetMillis;
+        /** Until when GitHub asked not to be called, in milliseconds since the epoch. */
+        final long retryAfterMillis;
+
+        Budget(int limit, int remaining, long resetMillis, long retryAfterMillis) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetMillis = resetMillis;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        boolean isLow() {
+            return remaining * 100L < (long) limit * LOW_BUDGET_PERCENT
+                    && resetMillis > System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Budgets by hashed {@code Authorization} header.
+     */
+    private final Cache<String, Budget> budgets = CacheBuilder.newBuilder()
+            .expireAfterWrite(2, TimeUnit.HOURS)
+            .build();
+
+    private GithubRateLimits() {
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = keyOf(request.header("Authorization"));
+        Budget budget = budgets.getIfPresent(key);
+        if (budget != null) {
+            long wait = budget.retryAfterMillis - System.currentTimeMillis();
+            if (wait > TimeUnit.SECONDS.toMillis(MAX_WAIT_SECONDS)) {
+                throw new IOException("GitHub asked to retry " + request.urlString() + " in "
+                        + TimeUnit.MILLISECONDS.toSeconds(wait) + " seconds");
+            }
+            if (wait > 0) {
+                LOGGER.log(Level.FINE, "Backing off for {0} ms before {1}", new Object[] {wait, request.urlString()});
+                sleep(wait);
+            }
+        }
+
+        Response response = chain.proceed(request);
+        record(key, budget, response);
+        return response;
+    }
+
+    private void record(String key, Budget previous, Response response) {
+        int limit = (int) header(response, "X-RateLimit-Limit", previous == null ? -1 : previous.limit);
+        int remaining = (int) header(response, "X-RateLimit-Remaining", previous == null ? -1 : previous.remaining);
+        long reset = header(response, "X-RateLimit-Reset", -1);
+        long resetMillis = reset < 0 ? (previous == null ? 0 : previous.resetMillis) : TimeUnit.SECONDS.toMillis(reset);
+        long retryAfterMillis = 0;
+        long retryAfter = header(response, "Retry-After", -1);
+        if (retryAfter >= 0 && (response.code() == HttpURLConnection.HTTP_FORBIDDEN || response.code() == 429)) {
+            // secondary rate limit, spread the retries of concurrent requests
+            retryAfterMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfter) + jitter();
+            LOGGER.log(Level.INFO, "GitHub secondary rate limit hit, backing off for {0} seconds", retryAfter);
+        }
+        if (limit >= 0 && remaining >= 0) {
+            budgets.put(key, new Budget(limit, remaining, resetMillis, retryAfterMillis));
+        } else if (retryAfterMillis > 0) {
+            budgets.put(key, new Budget(Integer.MAX_VALUE, Integer.MAX_VALUE, resetMillis, retryAfterMillis));
+        }
+    }
+
+    /**
+     * @param accessToken an OAuth access token
+     * @return the last known budget of the token, or null if unknown
+     */
+    Budget getBudget(String accessToken) {
+        return budgets.getIfPresent(keyOf("token " + accessToken));
+    }
+
+    /**
+     * @param accessToken an OAuth access token
+     * @return whether the token is running out of requests, in which case
+     *         background work on its behalf should be skipped
+     */
+    boolean isLow(String accessToken) {
+        Budget budget = getBudget(accessToken);
+        return budget != null && (budget.isLow() || budget.retryAfterMillis > System.currentTimeMillis());
+    }
+
+    /**
+     * @param accessToken an OAuth access token
+     * @return how long background work on behalf of the token should wait for its
+     *         budget to be reset, 0 if it need not wait
+     */
+    long holdBackMillis(String accessToken) {
+        if (!isLow(accessToken)) {
+            return 0;
+        }
+        Budget budget = getBudget(accessToken);
+        long until = Math.max(budget.isLow() ? budget.resetMillis : 0, budget.retryAfterMillis);
+        return Math.max(until - System.currentTimeMillis(), 0) + jitter();
+    }
+
+    /**
+     * @return the lowest remaining budget of any credential, or -1 if none is known
+     */
+    int getMinimumRemaining() {
+        int minimum = -1;
+        for (Budget budget : budgets.asMap().values()) {
+            if (budget.limit != Integer.MAX_VALUE && (minimum < 0 || budget.remaining < minimum)) {
+                minimum = budget.remaining;
+            }
+        }
+        return minimum;
+    }
+
+    private static String keyOf(String authorization) {
+        return GithubClientRegistry.sha256Hex(String.valueOf(authorization));
+    }
+
+    private static long header(Response response, String name, long defaultValue) {
+        String value = response.header(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long jitter() {
+        return ThreadLocalRandom.current().nextLong(MAX_JITTER_MILLIS);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit");
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubRateLimits.class.getName());
+}
@@ -0,0 +1,226 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.scm.SCM;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The GitHub repository of each job, in owner/name form, so that repository
+ * permission checks do not parse the repository URL of the job every time.
+ *
+ * The index is filled in parallel once the jobs are loaded, new jobs are
+ * added as they are created, and entries are dropped when a job is saved,
+ * updated or deleted, to be resolved again on their next use.  Jobs are held
+ * weakly.
+ */
+final class GithubRepositoryIndex {
+
+    /**
+     * Stands for jobs without a GitHub repository, since the cache cannot hold null.
+     */
+    private static final String NONE = "";
+
+    private static final Cache<Item, String> repositories = CacheBuilder.newBuilder().weakKeys().build();
+
+    private GithubRepositoryIndex() {
+    }
+
+    /**
+     * @param job the job
+     * @return the GitHub repository of the job in owner/name form, or null if it has none
+     */
+    static String repositoryOf(final Job<?, ?> job) {
+        String repositoryName;
+        try {
+            repositoryName = repositories.get(job, new Callable<String>() {
+                @Override
+                public String call() {
+                    String repositoryName = resolve(job);
+                    return repositoryName != null ? repositoryName : NONE;
+                }
+            });
+        } catch (ExecutionException e) {
+            // resolve does not throw checked exceptions
+            throw new IllegalStateException(e.getCause());
+        }
+        return repositoryName.equals(NONE) ? null : repositoryName;
+    }
+
+    /**
+     * Finds the repository of a job from its configuration: the SCM of a
+     * freestyle job, the branch source of a multibranch branch job, or the SCM
+     * the Jenkinsfile of a Pipeline job is read from.  What builds check out is
+     * not looked at, since a build script can check any repository out.
+     */
+    static String resolve(Job<?, ?> job) {
+        if (job instanceof AbstractProject) {
+            return resolve(((AbstractProject) job).getScm());
+        }
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        if (jenkins.getPlugin("branch-api") != null) {
+            String repositoryName = GithubBranchRepositories.repositoryOf(job);
+            if (repositoryName != null) {
+                return repositoryName;
+            }
+        }
+        if (jenkins.getPlugin("workflow-job") != null && jenkins.getPlugin("workflow-cps") != null) {
+            return GithubPipelineRepositories.repositoryOf(job);
+        }
+        return null;
+    }
+
+    /**
+     * Parses the URL of the first remote of a Git SCM.
+     */
+    static String resolve(SCM scm) {
+        if (scm instanceof GitSCM) {
+            GitSCM git = (GitSCM) scm;
+            List<UserRemoteConfig> userRemoteConfigs = git.getUserRemoteConfigs();
+            if (!userRemoteConfigs.isEmpty()) {
+                String repoUrl = userRemoteConfigs.get(0).getUrl();
+                if (repoUrl != null) {
+                    GitHubRepositoryName githubRepositoryName = GitHubRepositoryName.create(repoUrl);
+                    if (githubRepositoryName != null) {
+                        return githubRepositoryName.userName + "/" + githubRepositoryName.repositoryName;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the repository of a job, because its configuration changed.
+     */
+    static void invalidate(Item item) {
+        repositories.invalidate(item);
+    }
+
+    /**
+     * Necessary for testing
+     */
+    static void clear() {
+        repositories.invalidateAll();
+    }
+
+    /**
+     * Resolves the repositories of every job when repository permissions are in use.
+     *
+     * Runs in the background, so that a slow GitHub server does not hold the
+     * start up; jobs checked before it gets to them are resolved by the check.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void build() {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || !(jenkins.getAuthorizationStrategy() instanceof GithubAuthorizationStrategy)
+                || !((GithubAuthorizationStrategy) jenkins.getAuthorizationStrategy()).isUseRepositoryPermissions()) {
+            return;
+        }
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<Job> jobs = jenkins.getAllItems(Job.class);
+                try {
+                    GithubFanOut.map(jobs, new GithubFanOut.Call<Job, String>() {
+                        @Override
+                        public String call(Job job) {
+                            return repositoryOf(job);
+                        }
+                    });
+                    LOGGER.log(Level.FINE, "Resolved the GitHub repositories of {0} jobs", jobs.size());
+                } catch (IOException | RuntimeException e) {
+                    // the remaining jobs are resolved when first checked
+                    LOGGER.log(Level.WARNING, "Could not resolve the GitHub repositories of every job", e);
+                }
+            }
+        });
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * Resolves new jobs right away, so that the branch jobs an organization
+         * folder creates are indexed one at a time as they appear.
+         */
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Job) {
+                repositoryOf((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            invalidate(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            invalidate(item);
+        }
+    }
+
+    /**
+     * Also catches changes which do not go through the configuration page,
+     * such as a new {@code config.xml} posted through the API.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                invalidate((Item) o);
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubRepositoryIndex.class.getName());
+}
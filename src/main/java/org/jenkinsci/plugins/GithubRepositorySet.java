@@ -0,0 +1,196 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable set of repository names in owner/name form, held as a sorted
+ * array of ids into a {@link Dictionary} shared by all sets of the same caches.
+ *
+ * Members of the same organization see mostly the same repositories, so the
+ * names are stored once however many users' sets contain them, and each set
+ * costs four bytes per repository.  A dictionary only grows, so {@link GithubCaches}
+ * starts a new one whenever it is emptied or has collected enough names no
+ * set holds any more, and moves the sets it keeps to the new one.
+ */
+final class GithubRepositorySet extends AbstractSet<String> {
+
+    /**
+     * Ids of the repository names seen since the dictionary was created.
+     */
+    static final class Dictionary {
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+        private final Object lock = new Object();
+        private volatile String[] names = new String[1024];
+        private int nextId;
+
+        /**
+         * @param repositoryNames the names
+         * @return a compact copy of the names
+         */
+        GithubRepositorySet copyOf(Collection<String> repositoryNames) {
+            int[] ids = new int[repositoryNames.size()];
+            int size = 0;
+            for (String name : repositoryNames) {
+                ids[size++] = idOf(name);
+            }
+            Arrays.sort(ids, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            return new GithubRepositorySet(this, distinct == ids.length ? ids : Arrays.copyOf(ids, distinct));
+        }
+
+        /**
+         * @param name a repository name
+         * @return the instance of the name held by the dictionary
+         */
+        String intern(String name) {
+            return names[idOf(name)];
+        }
+
+        /**
+         * @return the number of names held
+         */
+        int size() {
+            return ids.size();
+        }
+
+        private int idOf(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            synchronized (lock) {
+                id = ids.get(name);
+                if (id == null) {
+                    id = nextId++;
+                    String[] current = names;
+                    if (id == current.length) {
+                        current = Arrays.copyOf(current, current.length * 2);
+                    }
+                    current[id] = name;
+                    // publishes the name before its id can be found
+                    names = current;
+                    ids.put(name, id);
+                }
+                return id;
+            }
+        }
+    }
+
+    /**
+     * The ids of the names and the dictionary they come from, replaced
+     * together when the set moves to another dictionary.
+     */
+    private static final class Ids {
+        final Dictionary dictionary;
+        final int[] ids;
+
+        Ids(Dictionary dictionary, int[] ids) {
+            this.dictionary = dictionary;
+            this.ids = ids;
+        }
+    }
+
+    private volatile Ids current;
+
+    private GithubRepositorySet(Dictionary dictionary, int[] ids) {
+        this.current = new Ids(dictionary, ids);
+    }
+
+    /**
+     * Holds the same names with ids of another dictionary, so that the
+     * dictionary this set was made with can be collected.
+     *
+     * @param dictionary the dictionary to use from now on
+     */
+    void moveTo(Dictionary dictionary) {
+        Ids from = current;
+        if (from.dictionary == dictionary) {
+            return;
+        }
+        String[] names = from.dictionary.names;
+        int[] ids = new int[from.ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.idOf(names[from.ids[i]]);
+        }
+        Arrays.sort(ids);
+        current = new Ids(dictionary, ids);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        Ids ids = current;
+        Integer id = ids.dictionary.ids.get(o);
+        return id != null && Arrays.binarySearch(ids.ids, id) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return current.ids.length;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Ids snapshot = current;
+        final int[] ids = snapshot.ids;
+        final String[] names = snapshot.dictionary.names;
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return names[ids[next++]];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.security.Permission;
+import org.acegisecurity.Authentication;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.util.IdentityHashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Authorization decisions made while serving one HTTP request, kept as an
+ * attribute of the request so that rendering a page asks each distinct
+ * question once.
+ *
+ * Decisions are keyed by the identity of the authentication, the ACL and the
+ * permission: a different authentication, such as one impersonated for part of
+ * the request, or a reconfigured authorization strategy, gets its own answers.
+ * A request is served by one thread at a time, so nothing is synchronized.
+ */
+final class GithubRequestMemo {
+
+    private static final String ATTRIBUTE = GithubRequestMemo.class.getName();
+
+    private final StaplerRequest request;
+    private final Map<Authentication, Map<Object, Map<Permission, Boolean>>> decisions =
+            new IdentityHashMap<Authentication, Map<Object, Map<Permission, Boolean>>>();
+
+    /** The item groups whose jobs were decided together, by permission. */
+    private final Map<Object, Set<Permission>> listings = new IdentityHashMap<Object, Set<Permission>>();
+
+    /** Whether the request is a GitHub webhook delivery, once known. */
+    Boolean webhookRequest;
+
+    private GithubRequestMemo(StaplerRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * @return the memo of the request being served by this thread, or null
+     *         when the thread is not serving a request
+     */
+    static GithubRequestMemo current() {
+        StaplerRequest request = Stapler.getCurrentRequest();
+        if (request == null) {
+            return null;
+        }
+        Object memo = request.getAttribute(ATTRIBUTE);
+        if (memo instanceof GithubRequestMemo) {
+            return (GithubRequestMemo) memo;
+        }
+        GithubRequestMemo created = new GithubRequestMemo(request);
+        request.setAttribute(ATTRIBUTE, created);
+        return created;
+    }
+
+    StaplerRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the decision already made, or null
+     */
+    Boolean get(Authentication a, Object acl, Permission permission) {
+        Map<Object, Map<Permission, Boolean>> byACL = decisions.get(a);
+        if (byACL == null) {
+            return null;
+        }
+        Map<Permission, Boolean> byPermission = byACL.get(acl);
+        return byPermission != null ? byPermission.get(permission) : null;
+    }
+
+    void put(Authentication a, Object acl, Permission permission, boolean granted) {
+        Map<Object, Map<Permission, Boolean>> byACL = decisions.get(a);
+        if (byACL == null) {
+            byACL = new IdentityHashMap<Object, Map<Permission, Boolean>>();
+            decisions.put(a, byACL);
+        }
+        Map<Permission, Boolean> byPermission = byACL.get(acl);
+        if (byPermission == null) {
+            byPermission = new IdentityHashMap<Permission, Boolean>();
+            byACL.put(acl, byPermission);
+        }
+        byPermission.put(permission, granted);
+    }
+
+    /**
+     * @return true the first time the jobs of the item group are decided for
+     *         the permission during this request
+     */
+    boolean startListing(Object itemGroup, Permission permission) {
+        Set<Permission> permissions = listings.get(itemGroup);
+        if (permissions == null) {
+            permissions = new HashSet<Permission>();
+            listings.put(itemGroup, permissions);
+        }
+        return permissions.add(permission);
+    }
+}
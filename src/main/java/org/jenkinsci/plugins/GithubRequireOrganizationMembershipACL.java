@@ -28,20 +28,28 @@ package org.jenkinsci.plugins;
 
 import hudson.model.AbstractProject;
 import hudson.model.Item;
-import hudson.plugins.git.GitSCM;
-import hudson.plugins.git.UserRemoteConfig;
-import hudson.scm.SCM;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
 import hudson.security.ACL;
 import hudson.security.Permission;
 import jenkins.model.Jenkins;
 import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.annotation.Nonnull;
+import java.lang.ref.WeakReference;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -62,7 +70,40 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
     private final boolean allowCcTrayPermission;
     private final boolean allowAnonymousReadPermission;
     private final boolean allowAnonymousJobStatusPermission;
-    private final AbstractProject project;
+    /**
+     * The job of a job ACL, null for the root ACL.  Held weakly so that the
+     * ACLs which {@link GithubAuthorizationStrategy} keeps by job do not keep
+     * deleted jobs and their builds in memory.
+     */
+    private final transient WeakReference<Job<?, ?>> project;
+    private boolean probeRepositoryPermissions;
+
+    /*
+     * The settings above compiled for hasPermission: hashed admin names, the
+     * organizations without duplicates, and which kinds of permission are
+     * granted without asking GitHub.  They are not saved, readResolve compiles
+     * them again.
+     */
+    private final transient Set<String> adminUserNames;
+    private final transient String[] organizationNames;
+    private final transient int authenticatedUserKinds;
+    private final transient int anonymousKinds;
+
+    /**
+     * Identifies this configuration in {@link GithubDecisionCache}, shared with
+     * the ACLs cloned for jobs.
+     */
+    private transient Object configuration;
+
+    /* Kinds of permission, see kindOf. */
+    private static final int READ = 1;
+    private static final int BUILD = 1 << 1;
+    private static final int VIEW_STATUS = 1 << 2;
+    private static final int CREATE = 1 << 3;
+    /** Job permissions granted on jobs without a repository if users may create jobs. */
+    private static final int OWN_JOB = 1 << 4;
+    /** Granted to members of the organizations. */
+    private static final int ORGANIZATION_KINDS = READ | BUILD;
 
     /*
      * (non-Javadoc)
@@ -72,6 +113,146 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
      */
     @Override
     public boolean hasPermission(@Nonnull Authentication a, @Nonnull Permission permission) {
+        long start = System.nanoTime();
+        boolean granted = false;
+        try {
+            GithubRequestMemo memo = GithubRequestMemo.current();
+            Boolean decision = memo != null ? memo.get(a, this, permission) : null;
+            if (decision == null) {
+                decision = decide(a, permission, memo);
+                if (memo != null) {
+                    memo.put(a, this, permission, decision);
+                }
+            }
+            granted = decision;
+            return granted;
+        } finally {
+            GithubMetrics.permissionChecked(System.nanoTime() - start, granted);
+        }
+    }
+
+    /**
+     * Looks up the decisions shared across requests for authenticated GitHub
+     * users.  Anonymous decisions depend on the request URI and are only
+     * remembered for the current request.
+     */
+    private boolean decide(@Nonnull Authentication a, @Nonnull Permission permission,
+                           GithubRequestMemo memo) {
+        String user = a.getName();
+        if (!(a instanceof GithubAuthenticationToken) || !a.isAuthenticated() || user == null) {
+            return Boolean.TRUE.equals(checkPermission(a, permission, memo));
+        }
+        String scope = decisionScope();
+        Boolean decision = GithubDecisionCache.get(configuration, user, permission, scope);
+        if (decision == null && memo != null && decideSiblings(a, permission, memo)) {
+            decision = GithubDecisionCache.get(configuration, user, permission, scope);
+        }
+        if (decision == null) {
+            long generation = GithubDecisionCache.generation();
+            decision = checkPermission(a, permission, memo);
+            if (decision == null) {
+                // not shared, so that GitHub is asked again by the next request
+                return false;
+            }
+            GithubDecisionCache.put(configuration, user, permission, scope, decision, generation);
+        }
+        return decision;
+    }
+
+    /**
+     * Jenkins lists the jobs of a view or a folder by checking them one at a
+     * time.  When such a check misses while serving a page other than the
+     * job's own, the jobs next to this one are decided together through
+     * {@link GithubAuthorizationStrategy#filterJobs}, once per request, so that
+     * the checks of the other jobs are answered from the decisions.
+     *
+     * @return whether the jobs were decided
+     */
+    private boolean decideSiblings(@Nonnull Authentication a, @Nonnull Permission permission,
+                                   @Nonnull GithubRequestMemo memo) {
+        Job<?, ?> job = project != null ? project.get() : null;
+        if (job == null || !useRepositoryPermissions
+                || memo.getRequest().findAncestorObject(Job.class) != null) {
+            return false;
+        }
+        ItemGroup<? extends Item> parent = job.getParent();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (parent == null || jenkins == null
+                || !(jenkins.getAuthorizationStrategy() instanceof GithubAuthorizationStrategy)
+                || !memo.startListing(parent, permission)) {
+            return false;
+        }
+        List<Job<?, ?>> jobs = new ArrayList<Job<?, ?>>();
+        // every job, not only those already known to be visible
+        SecurityContext previous = impersonate(SYSTEM);
+        try {
+            for (Item item : parent.getItems()) {
+                if (item instanceof Job) {
+                    jobs.add((Job<?, ?>) item);
+                }
+            }
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+        if (jobs.size() < 2) {
+            return false;
+        }
+        ((GithubAuthorizationStrategy) jenkins.getAuthorizationStrategy()).filterJobs(a, permission, jobs);
+        return true;
+    }
+
+    /**
+     * What the decisions of this ACL depend on besides its configuration and
+     * the user: nothing for the root ACL or without repository permissions,
+     * otherwise the repository of the job, so that every job of a repository
+     * shares its decisions and a job whose repository changes gets new ones.
+     */
+    String decisionScope() {
+        if (project == null || !useRepositoryPermissions) {
+            return "";
+        }
+        String repositoryName = getRepositoryName();
+        // no repository name starts with a slash
+        return repositoryName != null ? repositoryName : "/";
+    }
+
+    /**
+     * Fetches in one batch what deciding a permission on each of the scopes
+     * will ask GitHub, so that those decisions are then made from the caches.
+     * Nothing is fetched for users whose decisions do not depend on the
+     * repository, or whose decisions are already known.
+     *
+     * @param scopes scopes from {@link #decisionScope()}
+     */
+    void prefetch(@Nonnull Authentication a, @Nonnull Permission permission, Collection<String> scopes) {
+        String user = a.getName();
+        if (!useRepositoryPermissions || !(a instanceof GithubAuthenticationToken) || !a.isAuthenticated()
+                || user == null || adminUserNames.contains(user)) {
+            return;
+        }
+        int kind = kindOf(permission);
+        if ((kind & (READ | BUILD | OWN_JOB)) == 0) {
+            // decided without asking about repositories
+            return;
+        }
+        List<String> repositoryNames = new ArrayList<String>();
+        for (String scope : scopes) {
+            if (!scope.isEmpty() && !scope.equals("/")
+                    && GithubDecisionCache.get(configuration, user, permission, scope) == null) {
+                repositoryNames.add(scope);
+            }
+        }
+        ((GithubAuthenticationToken) a).prefetchRepositories(repositoryNames, (kind & READ) != 0,
+                probeRepositoryPermissions);
+    }
+
+    /**
+     * @param memo the decisions of the current request, or null outside of requests
+     * @return null when the permission is denied only because GitHub could not
+     *         tell whether the repository of the job is public
+     */
+    private Boolean checkPermission(@Nonnull Authentication a, @Nonnull Permission permission,
+                                    GithubRequestMemo memo) {
         if (a instanceof GithubAuthenticationToken) {
             if (!a.isAuthenticated())
                 return false;
@@ -80,66 +261,51 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
 
             String candidateName = a.getName();
 
-            if (adminUserNameList.contains(candidateName)) {
+            if (adminUserNames.contains(candidateName)) {
                 // if they are an admin then they have permission
-                log.finest("Granting Admin rights to user " + candidateName);
+                log.log(Level.FINEST, "Granting Admin rights to user {0}", candidateName);
                 return true;
             }
 
-            if (this.project != null) {
-                if (useRepositoryPermissions) {
-                    if(hasRepositoryPermission(authenticationToken, permission)) {
-                        log.finest("Granting Authenticated User " + permission.getId() +
-                            " permission on project " + project.getName() +
-                            "to user " + candidateName);
-                        return true;
-                    }
-                } else {
-                    if (authenticatedUserReadPermission) {
-                        if (checkReadPermission(permission)) {
-                            log.finest("Granting Authenticated User read permission " +
-                                "on project " + project.getName() +
-                                "to user " + candidateName);
-                            return true;
-                        }
-                    }
+            int kind = kindOf(permission);
+
+            if ((kind & authenticatedUserKinds) != 0) {
+                // read or create job, granted to every authenticated user
+                if (log.isLoggable(Level.FINEST)) {
+                    log.finest("Granting Authenticated User " + permission.getId()
+                            + " permission to user " + candidateName);
                 }
-            } else if (authenticatedUserReadPermission) {
-                if (checkReadPermission(permission)) {
-                    // if we support authenticated read and this is a read
-                    // request we allow it
-                    log.finest("Granting Authenticated User read permission to user "
-                            + candidateName);
                 return true;
-                }
             }
 
-            if (authenticatedUserCreateJobPermission && permission.equals(Item.CREATE)) {
+            Boolean repositoryPermission = this.project != null && useRepositoryPermissions
+                    ? repositoryPermission(authenticationToken, permission) : Boolean.FALSE;
+            if (Boolean.TRUE.equals(repositoryPermission)) {
+                if (log.isLoggable(Level.FINEST)) {
+                    Job<?, ?> job = this.project.get();
+                    log.finest("Granting Authenticated User " + permission.getId() +
+                        " permission on project " + (job != null ? job.getName() : null) +
+                        "to user " + candidateName);
+                }
                 return true;
             }
 
-            for (String organizationName : this.organizationNameList) {
-                if (authenticationToken.hasOrganizationPermission(
-                        candidateName, organizationName)) {
-
-                    String[] parts = permission.getId().split("\\.");
-
-                    String test = parts[parts.length - 1].toLowerCase();
-
-                    if (checkReadPermission(permission)
-                            || testBuildPermission(permission)) {
-                        // check the permission
-
-                        log.finest("Granting READ and BUILD rights to user "
-                                + candidateName + " a member of "
-                                + organizationName);
+            if ((kind & ORGANIZATION_KINDS) != 0) {
+                for (String organizationName : organizationNames) {
+                    if (authenticationToken.hasOrganizationPermission(
+                            candidateName, organizationName)) {
+                        if (log.isLoggable(Level.FINEST)) {
+                            log.finest("Granting READ and BUILD rights to user "
+                                    + candidateName + " a member of "
+                                    + organizationName);
+                        }
                         return true;
                     }
                 }
             }
 
             // no match.
-            return false;
+            return repositoryPermission != null ? Boolean.FALSE : null;
         } else {
             String authenticatedUserName = a.getName();
             if (authenticatedUserName == null) {
@@ -153,32 +319,29 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
             }
 
             if (authenticatedUserName.equals("anonymous")) {
-                if(checkJobStatusPermission(permission) && allowAnonymousJobStatusPermission) {
+                int kind = kindOf(permission);
+                if ((kind & anonymousKinds) != 0) {
                     return true;
                 }
 
-                if (checkReadPermission(permission)) {
-                    if (allowAnonymousReadPermission) {
-                        return true;
-                    }
-                    if (allowGithubWebHookPermission &&
-                            (currentUriPathEquals("github-webhook") ||
-                             currentUriPathEquals("github-webhook/"))) {
-                        log.finest("Granting READ access for github-webhook url: " + requestURI());
+                if ((kind & READ) != 0) {
+                    String requestUri = requestURI(memo);
+                    if (allowGithubWebHookPermission && isWebhookRequest(memo, requestUri)) {
+                        log.log(Level.FINEST, "Granting READ access for github-webhook url: {0}", requestUri);
                         return true;
                     }
-                    if (allowCcTrayPermission && currentUriPathEndsWithSegment("cc.xml")) {
-                        log.finest("Granting READ access for cctray url: " + requestURI());
+                    if (allowCcTrayPermission && currentUriPathEndsWithSegment(requestUri, "cc.xml")) {
+                        log.log(Level.FINEST, "Granting READ access for cctray url: {0}", requestUri);
                         return true;
                     }
-                    log.finer("Denying anonymous READ permission to url: " + requestURI());
+                    log.log(Level.FINER, "Denying anonymous READ permission to url: {0}", requestUri);
                 }
                 return false;
             }
 
-            if (adminUserNameList.contains(authenticatedUserName)) {
+            if (adminUserNames.contains(authenticatedUserName)) {
                 // if they are an admin then they have all permissions
-                log.finest("Granting Admin rights to user " + a.getName());
+                log.log(Level.FINEST, "Granting Admin rights to user {0}", authenticatedUserName);
                 return true;
             }
 
@@ -189,7 +352,21 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
         }
     }
 
-    private boolean currentUriPathEquals( String specificPath ) {
+    /**
+     * Whether the request is for the github-webhook URL, worked out once per request.
+     */
+    private boolean isWebhookRequest(GithubRequestMemo memo, String requestUri) {
+        if (memo != null && memo.webhookRequest != null) {
+            return memo.webhookRequest;
+        }
+        boolean webhookRequest = currentUriPathEquals(requestUri, "github-webhook", "github-webhook/");
+        if (memo != null) {
+            memo.webhookRequest = webhookRequest;
+        }
+        return webhookRequest;
+    }
+
+    private boolean currentUriPathEquals(String requestUri, String... specificPaths) {
         Jenkins jenkins = Jenkins.getInstance();
         if (jenkins == null) {
             throw new IllegalStateException("Jenkins not started");
@@ -198,93 +375,97 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
         if (rootUrl == null) {
             throw new IllegalStateException("Could not determine Jenkins URL");
         }
-        String requestUri = requestURI();
         if (requestUri != null) {
             String basePath = URI.create(rootUrl).getPath();
-            return URI.create(requestUri).getPath().equals(basePath + specificPath);
-        } else {
-            return false;
+            String path = URI.create(requestUri).getPath();
+            for (String specificPath : specificPaths) {
+                if (path.equals(basePath + specificPath)) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 
-    private boolean currentUriPathEndsWithSegment( String segment ) {
-        String requestUri = requestURI();
+    private boolean currentUriPathEndsWithSegment(String requestUri, String segment) {
         if (requestUri != null) {
-          return requestUri.substring(requestUri.lastIndexOf('/') + 1).equals(segment);
+            return requestUri.endsWith(segment)
+                    && (requestUri.length() == segment.length()
+                        || requestUri.charAt(requestUri.length() - segment.length() - 1) == '/');
         } else {
             return false;
         }
     }
 
-    private String requestURI() {
-        StaplerRequest currentRequest = Stapler.getCurrentRequest();
+    private String requestURI(GithubRequestMemo memo) {
+        StaplerRequest currentRequest = memo != null ? memo.getRequest() : Stapler.getCurrentRequest();
         return (currentRequest == null) ? null : currentRequest.getOriginalRequestURI();
     }
 
-    private boolean testBuildPermission(Permission permission) {
-        if (permission.getId().equals("hudson.model.Hudson.Build")
-                || permission.getId().equals("hudson.model.Item.Build")) {
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-    private boolean checkReadPermission(Permission permission) {
-        if (permission.getId().equals("hudson.model.Hudson.Read")
-                || permission.getId().equals("hudson.model.Item.Workspace")
-                || permission.getId().equals("hudson.model.Item.Read")) {
-            return true;
-        } else {
-            return false;
+    /**
+     * Classifies a permission by what the decisions of this ACL depend on.
+     * Switching on the id needs no allocation: the hash of the id is cached.
+     *
+     * @return a combination of {@link #READ}, {@link #BUILD}, {@link #VIEW_STATUS},
+     *         {@link #CREATE} and {@link #OWN_JOB}, 0 for any other permission
+     */
+    static int kindOf(Permission permission) {
+        switch (permission.getId()) {
+            case "hudson.model.Hudson.Read":
+            case "hudson.model.Item.Workspace":
+                return READ;
+            case "hudson.model.Item.Read":
+                return READ | OWN_JOB;
+            case "hudson.model.Hudson.Build":
+            case "hudson.model.Item.Build":
+                return BUILD;
+            case "hudson.model.Item.ViewStatus":
+                return VIEW_STATUS;
+            case "hudson.model.Item.Create":
+                return CREATE;
+            case "hudson.model.Item.Configure":
+            case "hudson.model.Item.Delete":
+            case "hudson.model.Item.ExtendedRead":
+                return OWN_JOB;
+            default:
+                return 0;
         }
     }
 
-    private boolean checkJobStatusPermission(Permission permission) {
-        return permission.getId().equals("hudson.model.Item.ViewStatus");
+    public boolean hasRepositoryPermission(GithubAuthenticationToken authenticationToken, Permission permission) {
+        return Boolean.TRUE.equals(repositoryPermission(authenticationToken, permission));
     }
 
-    public boolean hasRepositoryPermission(GithubAuthenticationToken authenticationToken, Permission permission) {
+    /**
+     * @return null when READ is denied only because GitHub could not tell
+     *         whether the repository is public
+     */
+    private Boolean repositoryPermission(GithubAuthenticationToken authenticationToken, Permission permission) {
         String repositoryName = getRepositoryName();
 
         if (repositoryName == null) {
-            if (authenticatedUserCreateJobPermission) {
-                if (permission.equals(Item.READ) ||
-                        permission.equals(Item.CONFIGURE) ||
-                        permission.equals(Item.DELETE) ||
-                        permission.equals(Item.EXTENDED_READ)) {
-                    return true;
-                } else {
-                    return false;
-                }
-            } else {
-                return false;
+            return authenticatedUserCreateJobPermission && (kindOf(permission) & OWN_JOB) != 0;
+        }
+        Boolean isPublic = null;
+        if ((kindOf(permission) & READ) != 0) {
+            isPublic = authenticationToken.publicRepository(repositoryName);
+            if (Boolean.TRUE.equals(isPublic)) {
+                return true;
             }
-        } else if (checkReadPermission(permission) &&
-                authenticationToken.isPublicRepository(repositoryName)) {
-            return true;
-        } else {
-            return authenticationToken.hasRepositoryPermission(repositoryName);
         }
+        boolean collaborator = probeRepositoryPermissions
+                ? authenticationToken.probeRepositoryPermission(repositoryName)
+                : authenticationToken.hasRepositoryPermission(repositoryName);
+        if (collaborator || isPublic != null || (kindOf(permission) & READ) == 0) {
+            return collaborator;
+        }
+        return null;
     }
 
     private String getRepositoryName() {
-        String repositoryName = null;
-        SCM scm = this.project.getScm();
-        if (scm instanceof GitSCM) {
-            GitSCM git = (GitSCM)scm;
-            List<UserRemoteConfig> userRemoteConfigs = git.getUserRemoteConfigs();
-            if (!userRemoteConfigs.isEmpty()) {
-                String repoUrl = userRemoteConfigs.get(0).getUrl();
-                if (repoUrl != null) {
-                    GitHubRepositoryName githubRepositoryName = GitHubRepositoryName.create(repoUrl);
-                    if (githubRepositoryName != null) {
-                        repositoryName = githubRepositoryName.userName + "/" + githubRepositoryName.repositoryName;
-                    }
-                }
-            }
-        }
-        return repositoryName;
+        Job<?, ?> job = this.project != null ? this.project.get() : null;
+        // a job no longer in memory has no repository to check
+        return job != null ? GithubRepositoryIndex.repositoryOf(job) : null;
     }
 
     public GithubRequireOrganizationMembershipACL(String adminUserNames,
@@ -296,32 +477,24 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
             boolean allowCcTrayPermission,
             boolean allowAnonymousReadPermission,
             boolean allowAnonymousJobStatusPermission) {
-        super();
-
-        this.authenticatedUserReadPermission      = authenticatedUserReadPermission;
-        this.useRepositoryPermissions             = useRepositoryPermissions;
-        this.authenticatedUserCreateJobPermission = authenticatedUserCreateJobPermission;
-        this.allowGithubWebHookPermission         = allowGithubWebHookPermission;
-        this.allowCcTrayPermission                = allowCcTrayPermission;
-        this.allowAnonymousReadPermission         = allowAnonymousReadPermission;
-        this.allowAnonymousJobStatusPermission    = allowAnonymousJobStatusPermission;
-        this.adminUserNameList                    = new LinkedList<String>();
-
-        String[] parts = adminUserNames.split(",");
-
-        for (String part : parts) {
-            adminUserNameList.add(part.trim());
-        }
-
-        this.organizationNameList = new LinkedList<String>();
-
-        parts = organizationNames.split(",");
+        this(split(adminUserNames),
+            split(organizationNames),
+            authenticatedUserReadPermission,
+            useRepositoryPermissions,
+            authenticatedUserCreateJobPermission,
+            allowGithubWebHookPermission,
+            allowCcTrayPermission,
+            allowAnonymousReadPermission,
+            allowAnonymousJobStatusPermission,
+            null);
+    }
 
-        for (String part : parts) {
-            organizationNameList.add(part.trim());
+    private static List<String> split(String names) {
+        List<String> list = new LinkedList<String>();
+        for (String part : names.split(",")) {
+            list.add(part.trim());
         }
-
-        this.project = null;
+        return list;
     }
 
     public GithubRequireOrganizationMembershipACL(List<String> adminUserNameList,
@@ -333,7 +506,7 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
             boolean allowCcTrayPermission,
             boolean allowAnonymousReadPermission,
             boolean allowAnonymousJobStatusPermission,
-            AbstractProject project) {
+            Job<?, ?> project) {
         super();
 
         this.adminUserNameList                    = adminUserNameList;
@@ -345,11 +518,46 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
         this.allowCcTrayPermission                = allowCcTrayPermission;
         this.allowAnonymousReadPermission         = allowAnonymousReadPermission;
         this.allowAnonymousJobStatusPermission    = allowAnonymousJobStatusPermission;
-        this.project                              = project;
+        this.project                              = project != null ? new WeakReference<Job<?, ?>>(project) : null;
+
+        this.adminUserNames = new HashSet<String>(adminUserNameList);
+        this.organizationNames = new LinkedHashSet<String>(organizationNameList).toArray(new String[0]);
+        int authenticatedUserKinds = 0;
+        if (authenticatedUserReadPermission && !(project != null && useRepositoryPermissions)) {
+            authenticatedUserKinds |= READ;
+        }
+        if (authenticatedUserCreateJobPermission) {
+            authenticatedUserKinds |= CREATE;
+        }
+        this.authenticatedUserKinds = authenticatedUserKinds;
+        int anonymousKinds = 0;
+        if (allowAnonymousReadPermission) {
+            anonymousKinds |= READ;
+        }
+        if (allowAnonymousJobStatusPermission) {
+            anonymousKinds |= VIEW_STATUS;
+        }
+        this.anonymousKinds = anonymousKinds;
+        this.configuration = new Object();
+    }
+
+    private Object readResolve() {
+        GithubRequireOrganizationMembershipACL acl = cloneForJob(project != null ? project.get() : null);
+        acl.configuration = new Object();
+        return acl;
     }
 
     public GithubRequireOrganizationMembershipACL cloneForProject(AbstractProject project) {
-        return new GithubRequireOrganizationMembershipACL(
+        return cloneForJob(project);
+    }
+
+    /**
+     * @param job a job of any type, including Pipeline and multibranch branch jobs
+     * @return the ACL of the job, checking the permissions of its GitHub repository
+     *         when repository permissions are used
+     */
+    public GithubRequireOrganizationMembershipACL cloneForJob(Job<?, ?> job) {
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL(
             this.adminUserNameList,
             this.organizationNameList,
             this.authenticatedUserReadPermission,
@@ -359,7 +567,10 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
             this.allowCcTrayPermission,
             this.allowAnonymousReadPermission,
             this.allowAnonymousJobStatusPermission,
-            project);
+            job);
+        acl.probeRepositoryPermissions = this.probeRepositoryPermissions;
+        acl.configuration = this.configuration;
+        return acl;
     }
 
     public List<String> getOrganizationNameList() {
@@ -374,6 +585,23 @@ public class GithubRequireOrganizationMembershipACL extends ACL {
         return useRepositoryPermissions;
     }
 
+    /**
+     * @return whether repository permissions are checked one repository at a time
+     */
+    public boolean isProbeRepositoryPermissions() {
+        return probeRepositoryPermissions;
+    }
+
+    /**
+     * @param probeRepositoryPermissions whether repository permissions are checked one
+     *        repository at a time instead of listing every repository of the user
+     */
+    void setProbeRepositoryPermissions(boolean probeRepositoryPermissions) {
+        this.probeRepositoryPermissions = probeRepositoryPermissions;
+        this.configuration = new Object();
+        GithubDecisionCache.invalidateAll();
+    }
+
     public boolean isAuthenticatedUserCreateJobPermission() {
         return authenticatedUserCreateJobPermission;
     }
@@ -0,0 +1,284 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size bounded on-disk cache of GitHub API responses which replays their ETags.
+ *
+ * Every GET request for which a response is stored is sent with
+ * {@code If-None-Match}.  When GitHub answers {@code 304 Not Modified}, which
+ * does not count against the rate limit, the stored response is returned
+ * instead.  Entries are keyed by the request URL and the {@code Authorization}
+ * and {@code Accept} headers, so users never see each other's responses nor a
+ * response in another media type, and the least recently used entries are
+ * deleted once the cache grows beyond its maximum size.
+ *
+ * Bodies are stored as received, unencrypted, including the listings of
+ * private organizations and repositories, so the cache directory is as
+ * sensitive as the rest of {@code JENKINS_HOME}.
+ */
+final class GithubResponseCache implements Interceptor {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * Entry sizes in access order, guarded by {@code this}.
+     */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    GithubResponseCache(File directory, long maxSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        loadIndex();
+    }
+
+    private synchronized void loadIndex() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                deleteQuietly(file);
+            } else if (file.isFile()) {
+                index.put(file.getName(), file.length());
+                size += file.length();
+            }
+        }
+        trimToSize();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) || request.header("If-None-Match") != null) {
+            return chain.proceed(request);
+        }
+
+        String key = keyOf(request);
+        Entry cached = get(key);
+        if (cached != null) {
+            request = request.newBuilder().header("If-None-Match", cached.etag).build();
+        }
+
+        Response response = chain.proceed(request);
+        if (cached != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            LOGGER.log(Level.FINEST, "Not modified: {0}", request.urlString());
+            response.body().close();
+            return cached.replay(response);
+        }
+
+        String etag = response.header("ETag");
+        if (response.code() == HttpURLConnection.HTTP_OK && etag != null) {
+            ResponseBody body = response.body();
+            byte[] bytes = body.bytes();
+            put(key, new Entry(etag, response.headers(), bytes));
+            return response.newBuilder().body(ResponseBody.create(body.contentType(), bytes)).build();
+        }
+        if (cached != null) {
+            remove(key);
+        }
+        return response;
+    }
+
+    static String keyOf(Request request) {
+        // github-api asks for preview media types on some endpoints
+        return GithubClientRegistry.sha256Hex(request.header("Authorization") + "\n" + request.header("Accept")
+                + "\n" + request.urlString());
+    }
+
+    Entry get(String key) {
+        synchronized (this) {
+            if (index.get(key) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return Entry.read(in);
+        } catch (IOException e) {
+            // evicted concurrently or corrupted, either way a miss
+            LOGGER.log(Level.FINEST, "Discarding cached response " + key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    void put(String key, Entry entry) {
+        if (entry.body.length > maxSize / 16) {
+            // not worth evicting a large part of the cache for a single response
+            return;
+        }
+        File tmp = new File(directory, key + ".tmp");
+        File file = new File(directory, key);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                entry.write(out);
+            }
+            synchronized (this) {
+                if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                    throw new IOException("Could not rename " + tmp + " to " + file);
+                }
+                Long previous = index.put(key, file.length());
+                size += file.length() - (previous == null ? 0 : previous);
+                trimToSize();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not cache response " + key, e);
+            deleteQuietly(tmp);
+        }
+    }
+
+    synchronized void remove(String key) {
+        Long previous = index.remove(key);
+        if (previous != null) {
+            size -= previous;
+            deleteQuietly(new File(directory, key));
+        }
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            deleteQuietly(new File(directory, eldest.getKey()));
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.log(Level.FINE, "Could not delete {0}", file);
+        }
+    }
+
+    /**
+     * A stored response: its ETag, network headers and raw body.
+     */
+    static final class Entry {
+        final String etag;
+        final Headers headers;
+        final byte[] body;
+
+        Entry(String etag, Headers headers, byte[] body) {
+            this.etag = etag;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Rebuilds the stored response, taking everything but the content
+         * headers from the fresh {@code 304} so rate limit headers stay current.
+         */
+        Response replay(Response notModified) {
+            Headers.Builder merged = headers.newBuilder();
+            Headers fresh = notModified.headers();
+            for (int i = 0; i < fresh.size(); i++) {
+                String name = fresh.name(i);
+                if (!name.regionMatches(true, 0, "Content-", 0, "Content-".length())
+                        && !name.equalsIgnoreCase("Transfer-Encoding")) {
+                    merged.set(name, fresh.value(i));
+                }
+            }
+            String contentType = headers.get("Content-Type");
+            return notModified.newBuilder()
+                    .code(HttpURLConnection.HTTP_OK)
+                    .message("OK")
+                    .headers(merged.build())
+                    .body(ResponseBody.create(contentType == null ? null : MediaType.parse(contentType), body))
+                    .build();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(etag);
+            out.writeInt(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                out.writeUTF(headers.name(i));
+                out.writeUTF(headers.value(i));
+            }
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache entry format");
+            }
+            String etag = in.readUTF();
+            Headers.Builder headers = new Headers.Builder();
+            for (int i = in.readInt(); i > 0; i--) {
+                headers.add(in.readUTF(), in.readUTF());
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(etag, headers.build(), body);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubResponseCache.class.getName());
+}
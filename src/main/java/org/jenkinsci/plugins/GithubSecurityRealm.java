@@ -41,6 +41,7 @@ import hudson.security.GroupDetails;
 import hudson.security.SecurityRealm;
 import hudson.security.UserMayOrMayNotExistException;
 import hudson.tasks.Mailer;
+import hudson.util.FormValidation;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
 import jenkins.security.SecurityListener;
@@ -54,6 +55,8 @@ import org.acegisecurity.userdetails.UserDetails;
 import org.acegisecurity.userdetails.UserDetailsService;
 import org.acegisecurity.userdetails.UsernameNotFoundException;
 import org.apache.commons.httpclient.URIException;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -69,10 +72,12 @@ import org.kohsuke.github.GHMyself;
 import org.kohsuke.github.GHOrganization;
 import org.kohsuke.github.GHTeam;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.Header;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataRetrievalFailureException;
@@ -85,6 +90,8 @@ import java.net.Proxy;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -107,6 +114,10 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
     private Secret clientSecret;
     private String oauthScopes;
     private String[] myScopes;
+    private String cacheSpec;
+    private transient GithubCacheSpec cacheSpecification;
+    private Secret webhookSecret;
+    private Secret serverAccessToken;
 
     /**
      * @param githubWebUri The URI to the root of the web UI for GitHub or GitHub Enterprise,
@@ -130,6 +141,8 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
         this.clientID     = Util.fixEmptyAndTrim(clientID);
         setClientSecret(Util.fixEmptyAndTrim(clientSecret));
         this.oauthScopes  = Util.fixEmptyAndTrim(oauthScopes);
+        // decisions made for users of the previous realm no longer hold
+        GithubDecisionCache.invalidateAll();
     }
 
     private GithubSecurityRealm() {    }
@@ -179,6 +192,72 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
         this.oauthScopes = oauthScopes;
     }
 
+    /**
+     * @param cacheSpec the specification of the authorization caches, see {@link GithubCacheSpec}
+     */
+    @DataBoundSetter
+    public void setCacheSpec(String cacheSpec) {
+        this.cacheSpec = Util.fixEmptyAndTrim(cacheSpec);
+        this.cacheSpecification = null;
+    }
+
+    /**
+     * @return the specification of the authorization caches, or null for the defaults
+     */
+    public String getCacheSpec() {
+        return cacheSpec;
+    }
+
+    /**
+     * @return the parsed cache specification, the defaults if it is not valid
+     */
+    GithubCacheSpec getCacheSpecification() {
+        GithubCacheSpec spec = this.cacheSpecification;
+        if (spec == null) {
+            try {
+                spec = GithubCacheSpec.parse(cacheSpec);
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Invalid cache specification, using the defaults: " + cacheSpec, e);
+                spec = GithubCacheSpec.DEFAULT;
+            }
+            this.cacheSpecification = spec;
+        }
+        return spec;
+    }
+
+    /**
+     * @param webhookSecret the secret GitHub signs webhook deliveries with, see {@link GithubWebhookAction}
+     */
+    @DataBoundSetter
+    public void setWebhookSecret(String webhookSecret) {
+        webhookSecret = Util.fixEmptyAndTrim(webhookSecret);
+        this.webhookSecret = webhookSecret == null ? null : Secret.fromString(webhookSecret);
+    }
+
+    /**
+     * @return the secret GitHub signs webhook deliveries with, or null if webhooks are not accepted
+     */
+    public Secret getWebhookSecret() {
+        return webhookSecret;
+    }
+
+    /**
+     * @param serverAccessToken a token used instead of the token of each user for lookups
+     *                          whose answer is the same for everybody, see {@link GithubPublicRepositories}
+     */
+    @DataBoundSetter
+    public void setServerAccessToken(String serverAccessToken) {
+        serverAccessToken = Util.fixEmptyAndTrim(serverAccessToken);
+        this.serverAccessToken = serverAccessToken == null ? null : Secret.fromString(serverAccessToken);
+    }
+
+    /**
+     * @return the token for lookups whose answer is the same for everybody, or null to use the token of each user
+     */
+    public Secret getServerAccessToken() {
+        return serverAccessToken;
+    }
+
     /**
      * Checks the security realm for a GitHub OAuth scope.
      * @param scope A scope to check for in the security realm.
@@ -237,6 +316,24 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
             writer.setValue(realm.getOauthScopes());
             writer.endNode();
 
+            if (realm.getCacheSpec() != null) {
+                writer.startNode("cacheSpec");
+                writer.setValue(realm.getCacheSpec());
+                writer.endNode();
+            }
+
+            if (realm.getWebhookSecret() != null) {
+                writer.startNode("webhookSecret");
+                writer.setValue(realm.getWebhookSecret().getEncryptedValue());
+                writer.endNode();
+            }
+
+            if (realm.getServerAccessToken() != null) {
+                writer.startNode("serverAccessToken");
+                writer.setValue(realm.getServerAccessToken().getEncryptedValue());
+                writer.endNode();
+            }
+
         }
 
         public Object unmarshal(HierarchicalStreamReader reader,
@@ -282,6 +379,12 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
                 realm.setGithubApiUri(value);
             } else if (node.toLowerCase().equals("oauthscopes")) {
                 realm.setOauthScopes(value);
+            } else if (node.toLowerCase().equals("cachespec")) {
+                realm.setCacheSpec(value);
+            } else if (node.toLowerCase().equals("webhooksecret")) {
+                realm.setWebhookSecret(value);
+            } else if (node.toLowerCase().equals("serveraccesstoken")) {
+                realm.setServerAccessToken(value);
             } else {
                 throw new ConversionException("Invalid node value = " + node);
             }
@@ -367,8 +470,8 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
             GithubAuthenticationToken auth = new GithubAuthenticationToken(accessToken, getGithubApiUri());
             SecurityContextHolder.getContext().setAuthentication(auth);
 
-            GHMyself self = auth.getMyself();
-            User u = User.current();
+            final GHMyself self = auth.getMyself();
+            final User u = User.current();
             if (u == null) {
                 throw new IllegalStateException("Can't find user");
             }
@@ -376,15 +479,26 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
             // Set email from github only if empty
             if (!u.getProperty(Mailer.UserProperty.class).hasExplicitlyConfiguredAddress()) {
                 if(hasScope("user") || hasScope("user:email")) {
-                    String primary_email = null;
-                    for(GHEmail e : self.getEmails2()) {
-                        if(e.isPrimary()) {
-                            primary_email = e.getEmail();
+                    // not needed to finish logging in, so looked up in the background
+                    GithubFanOut.start(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            try {
+                                String primary_email = null;
+                                for(GHEmail e : self.getEmails2()) {
+                                    if(e.isPrimary()) {
+                                        primary_email = e.getEmail();
+                                    }
+                                }
+                                if(primary_email != null) {
+                                    u.addProperty(new Mailer.UserProperty(primary_email));
+                                }
+                            } catch (IOException e) {
+                                LOGGER.log(Level.WARNING, "Failed to set the email address of " + self.getLogin(), e);
+                            }
+                            return null;
                         }
-                    }
-                    if(primary_email != null) {
-                        u.addProperty(new Mailer.UserProperty(primary_email));
-                    }
+                    });
                 } else {
                     u.addProperty(new Mailer.UserProperty(auth.getGitHub().getMyself().getEmail()));
                 }
@@ -527,6 +641,15 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
             return DEFAULT_OAUTH_SCOPES;
         }
 
+        public FormValidation doCheckCacheSpec(@QueryParameter String value) {
+            try {
+                GithubCacheSpec.parse(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
         public DescriptorImpl() {
             super();
             // TODO Auto-generated constructor stub
@@ -616,7 +739,10 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
                 this.getGithubApiUri().equals(obj.getGithubApiUri()) &&
                 this.getClientID().equals(obj.getClientID()) &&
                 this.getClientSecret().equals(obj.getClientSecret()) &&
-                this.getOauthScopes().equals(obj.getOauthScopes());
+                this.getOauthScopes().equals(obj.getOauthScopes()) &&
+                StringUtils.equals(this.getCacheSpec(), obj.getCacheSpec()) &&
+                ObjectUtils.equals(this.getWebhookSecret(), obj.getWebhookSecret()) &&
+                ObjectUtils.equals(this.getServerAccessToken(), obj.getServerAccessToken());
         } else {
             return false;
         }
@@ -630,6 +756,9 @@ public class GithubSecurityRealm extends SecurityRealm implements UserDetailsSer
                 .append(this.getClientID())
                 .append(this.getClientSecret())
                 .append(this.getOauthScopes())
+                .append(this.getCacheSpec())
+                .append(this.getWebhookSecret())
+                .append(this.getServerAccessToken())
                 .toHashCode();
     }
 
@@ -0,0 +1,160 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the teams a user belongs to, many organizations per GitHub GraphQL
+ * query.
+ *
+ * The REST API only lists the teams of the authenticated user.  For anybody
+ * else it needs the member list of every team, so the calls grow with the
+ * number and size of the teams.  GraphQL filters the teams of an organization
+ * by member instead: the calls only grow with the number of organizations,
+ * and with the teams the user belongs to past the first {@value #PAGE_SIZE}.
+ */
+final class GithubTeamMemberships {
+
+    /**
+     * Number of organizations looked up by a single query.
+     */
+    static final int BATCH_SIZE =
+            Integer.getInteger(GithubTeamMemberships.class.getName() + ".batchSize", 20);
+
+    static final int PAGE_SIZE = 100;
+
+    private GithubTeamMemberships() {
+    }
+
+    /**
+     * @param githubServer the GitHub API URI
+     * @param accessToken the credential to look the teams up with, which only sees the teams visible to it
+     * @param userLogin the login of the user
+     * @param organizations the logins of the organizations
+     * @return the names of the teams of the user by organization, empty for organizations
+     *         whose teams the credential cannot see, or null if the server has no GraphQL API
+     * @throws IOException if GitHub could not be asked
+     */
+    static Map<String, Set<String>> lookup(final String githubServer, final String accessToken,
+                                           final String userLogin, Collection<String> organizations)
+            throws IOException {
+        List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> batch = null;
+        for (String organization : organizations) {
+            if (batch == null || batch.size() >= BATCH_SIZE) {
+                batch = new ArrayList<String>();
+                batches.add(batch);
+            }
+            batch.add(organization);
+        }
+        Map<String, Set<String>> teams = new HashMap<String, Set<String>>();
+        for (Map<String, Set<String>> found : GithubFanOut.map(batches,
+                new GithubFanOut.Call<List<String>, Map<String, Set<String>>>() {
+                    @Override
+                    public Map<String, Set<String>> call(List<String> batch) throws IOException {
+                        return query(githubServer, accessToken, userLogin, batch);
+                    }
+                })) {
+            if (found == null) {
+                return null;
+            }
+            teams.putAll(found);
+        }
+        return teams;
+    }
+
+    /**
+     * Queries a batch, then the next page of the organizations with more teams.
+     *
+     * @return the teams, or null if the server has no GraphQL API
+     */
+    private static Map<String, Set<String>> query(String githubServer, String accessToken, String userLogin,
+                                                  List<String> batch) throws IOException {
+        Map<String, Set<String>> teams = new HashMap<String, Set<String>>();
+        Map<String, String> cursors = new HashMap<String, String>();
+        for (String organization : batch) {
+            teams.put(organization, new LinkedHashSet<String>());
+        }
+        List<String> pending = batch;
+        while (!pending.isEmpty()) {
+            // logins and cursors are passed as variables, never spliced into the query
+            StringBuilder parameters = new StringBuilder("$u: [String!]!");
+            StringBuilder fields = new StringBuilder();
+            StringBuilder variables = new StringBuilder("\"u\": [").append(JSONUtils.quote(userLogin)).append("]");
+            for (int i = 0; i < pending.size(); i++) {
+                String organization = pending.get(i);
+                String cursor = cursors.get(organization);
+                parameters.append(", $o").append(i).append(": String!, $a").append(i).append(": String");
+                fields.append(" o").append(i).append(": organization(login: $o").append(i)
+                        .append(") { teams(first: ").append(PAGE_SIZE).append(", after: $a").append(i)
+                        .append(", userLogins: $u) { nodes { name } pageInfo { hasNextPage endCursor } } }");
+                variables.append(", \"o").append(i).append("\": ").append(JSONUtils.quote(organization))
+                        .append(", \"a").append(i).append("\": ")
+                        .append(cursor == null ? "null" : JSONUtils.quote(cursor));
+            }
+            GithubGraphQL.Result result = GithubGraphQL.query(githubServer, accessToken,
+                    "query(" + parameters + ") {" + fields + " }", variables.toString());
+            if (result == null) {
+                return null;
+            }
+            List<String> next = new ArrayList<String>();
+            for (int i = 0; i < pending.size(); i++) {
+                String organization = pending.get(i);
+                JSONObject found = result.data.optJSONObject("o" + i);
+                JSONObject connection = found == null || found.isNullObject() ? null : found.optJSONObject("teams");
+                if (connection == null || connection.isNullObject()) {
+                    // not visible to the credential, like a team listing answering 403
+                    continue;
+                }
+                JSONArray nodes = connection.optJSONArray("nodes");
+                for (int j = 0; nodes != null && j < nodes.size(); j++) {
+                    JSONObject team = nodes.optJSONObject(j);
+                    if (team != null && team.has("name")) {
+                        teams.get(organization).add(team.getString("name"));
+                    }
+                }
+                JSONObject pageInfo = connection.optJSONObject("pageInfo");
+                if (pageInfo != null && pageInfo.optBoolean("hasNextPage")) {
+                    cursors.put(organization, pageInfo.optString("endCursor"));
+                    next.add(organization);
+                }
+            }
+            pending = next;
+        }
+        return teams;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ The MIT License
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+
+
+
+ */
+package org.jenkinsci.plugins;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.SecurityRealm;
+import hudson.security.csrf.CrumbExclusion;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives GitHub organization webhooks and drops the authorization cache
+ * entries affected by each membership, team or repository change.
+ *
+ * Deliveries must be signed with the webhook secret of {@link GithubSecurityRealm}.
+ */
+@Extension
+public class GithubWebhookAction implements UnprotectedRootAction {
+
+    /** The URL of the action. */
+    static final String URL_NAME = "github-oauth-webhook";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public String getDisplayName() {
+        return "GitHub OAuth Webhook";
+    }
+
+    @Override
+    public String getIconFileName() {
+        // hide it
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    @RequirePOST
+    public HttpResponse doIndex(StaplerRequest request) throws IOException {
+        Secret secret = getSecret();
+        if (secret == null) {
+            return HttpResponses.error(HttpServletResponse.SC_FORBIDDEN, "No webhook secret is configured");
+        }
+        byte[] body = IOUtils.toByteArray(request.getInputStream());
+        if (!isSignatureValid(secret.getPlainText(), body,
+                request.getHeader("X-Hub-Signature-256"), request.getHeader("X-Hub-Signature"))) {
+            LOGGER.log(Level.WARNING, "Rejected a GitHub webhook delivery with an invalid signature from {0}",
+                    request.getRemoteAddr());
+            return HttpResponses.error(HttpServletResponse.SC_FORBIDDEN, "Invalid signature");
+        }
+        String content = new String(body, UTF_8);
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")
+                && content.startsWith("payload=")) {
+            content = URLDecoder.decode(content.substring("payload=".length()), "UTF-8");
+        }
+        try {
+            handle(GithubAuthenticationToken.caches(), request.getHeader("X-GitHub-Event"),
+                    JSONObject.fromObject(content));
+        } catch (JSONException e) {
+            return HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST, e);
+        }
+        return HttpResponses.ok();
+    }
+
+    private static Secret getSecret() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        SecurityRealm realm = jenkins.getSecurityRealm();
+        return realm instanceof GithubSecurityRealm ? ((GithubSecurityRealm) realm).getWebhookSecret() : null;
+    }
+
+    /**
+     * Checks the signature of a delivery, preferring the SHA-256 one.
+     *
+     * @param secret the webhook secret
+     * @param body the body of the delivery
+     * @param sha256Signature the {@code X-Hub-Signature-256} header, may be null
+     * @param sha1Signature the {@code X-Hub-Signature} header, may be null
+     * @return whether the body was signed with the secret
+     */
+    static boolean isSignatureValid(String secret, byte[] body, String sha256Signature, String sha1Signature) {
+        if (sha256Signature != null) {
+            return isSignatureValid("HmacSHA256", "sha256=", secret, body, sha256Signature);
+        }
+        if (sha1Signature != null) {
+            return isSignatureValid("HmacSHA1", "sha1=", secret, body, sha1Signature);
+        }
+        return false;
+    }
+
+    private static boolean isSignatureValid(String algorithm, String prefix, String secret, byte[] body,
+                                            String signature) {
+        if (!signature.startsWith(prefix)) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(UTF_8), algorithm));
+            String expected = prefix + Util.toHexString(mac.doFinal(body));
+            return MessageDigest.isEqual(expected.getBytes(UTF_8), signature.toLowerCase().getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    /**
+     * Drops the cache entries affected by an event.
+     *
+     * @param caches the caches
+     * @param event the {@code X-GitHub-Event} header
+     * @param payload the payload of the event
+     */
+    static void handle(GithubCaches caches, String event, JSONObject payload) {
+        String action = payload.optString("action");
+        String organization = get(payload, "organization", "login");
+        LOGGER.log(Level.FINE, "GitHub {0} event, action {1}", new Object[] {event, action});
+        if ("organization".equals(event)) {
+            String member = get(payload, "membership", "user", "login");
+            if (member != null) {
+                caches.invalidateUser(member);
+            } else if (organization != null) {
+                // renamed or deleted, every member is affected
+                for (Map.Entry<String, Set<String>> entry : caches.userOrganizationCache.asMap().entrySet()) {
+                    if (entry.getValue().contains(organization)) {
+                        caches.invalidateUser(entry.getKey());
+                    }
+                }
+            }
+        } else if ("member".equals(event)) {
+            String member = get(payload, "member", "login");
+            String repository = get(payload, "repository", "full_name");
+            if (member != null) {
+                caches.invalidateUserRepositories(member);
+            }
+            if (repository != null) {
+                caches.invalidateRepositoryCollaborators(repository);
+            }
+        } else if ("membership".equals(event)) {
+            String member = get(payload, "member", "login");
+            String team = get(payload, "team", "name");
+            if (organization != null && team != null) {
+                caches.invalidateTeam(organization, team);
+            }
+            if (member != null) {
+                caches.invalidateUserRepositories(member);
+            }
+        } else if ("team".equals(event)) {
+            String team = get(payload, "team", "name");
+            String previousName = get(payload, "changes", "name", "from");
+            if (organization != null && team != null) {
+                caches.invalidateTeam(organization, team);
+            }
+            if (organization != null && previousName != null) {
+                caches.invalidateTeam(organization, previousName);
+            }
+        } else if ("repository".equals(event)) {
+            String repository = get(payload, "repository", "full_name");
+            String previousName = get(payload, "changes", "repository", "name", "from");
+            // only these change which members of the owning organization can see the repository,
+            // otherwise the users who have it cached are enough
+            boolean ownerMembersAffected = "created".equals(action) || "publicized".equals(action)
+                    || "privatized".equals(action) || "transferred".equals(action);
+            if (repository != null) {
+                caches.invalidateRepository(repository, ownerMembersAffected);
+                if (previousName != null && repository.indexOf('/') > 0) {
+                    caches.invalidateRepository(repository.substring(0, repository.indexOf('/') + 1) + previousName,
+                            ownerMembersAffected);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the string at a path of nested objects, or null if any part of it is missing
+     */
+    private static String get(JSONObject object, String... path) {
+        for (int i = 0; i < path.length - 1; i++) {
+            object = object.optJSONObject(path[i]);
+            if (object == null || object.isNullObject()) {
+                return null;
+            }
+        }
+        String value = object.optString(path[path.length - 1], null);
+        return Util.fixEmpty(value);
+    }
+
+    /**
+     * Lets GitHub deliver webhooks without a crumb, the signature authenticates them instead.
+     */
+    @Extension
+    public static class CrumbExclusionImpl extends CrumbExclusion {
+        @Override
+        public boolean process(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            String pathInfo = request.getPathInfo();
+            if (pathInfo != null && (pathInfo.equals("/" + URL_NAME) || pathInfo.startsWith("/" + URL_NAME + "/"))) {
+                chain.doFilter(request, response);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GithubWebhookAction.class.getName());
+}
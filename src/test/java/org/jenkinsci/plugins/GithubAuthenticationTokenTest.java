@@ -1,26 +1,47 @@
 package org.jenkinsci.plugins;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import jenkins.model.Jenkins;
+import org.acegisecurity.GrantedAuthority;
 import org.apache.commons.lang.SerializationUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.kohsuke.github.GHMyself;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHPersonSet;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTeam;
+import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.PagedIterable;
 import org.kohsuke.github.RateLimitHandler;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({GitHub.class, GitHubBuilder.class, Jenkins.class, GithubSecurityRealm.class})
+@PrepareForTest({GitHub.class, GitHubBuilder.class, Jenkins.class, GithubSecurityRealm.class, PagedIterable.class, GHTeam.class})
 public class GithubAuthenticationTokenTest {
 
     @Mock
@@ -49,6 +70,133 @@ public class GithubAuthenticationTokenTest {
         assertEquals(deserializedToken.getMyself().getLogin(), deserializedToken.getMyself().getLogin());
     }
 
+    @Test
+    public void testOtherUsersOrganizationsAreNotLoadedWithMyToken() throws IOException {
+        mockGHMyselfAs("bob");
+        GitHub gh = GitHubBuilder.fromEnvironment().build();
+        GithubAuthenticationToken authenticationToken = new GithubAuthenticationToken("accessToken", "https://api.github.com");
+        try {
+            authenticationToken.hasOrganizationPermission("alice", "acme");
+            fail("alice has no token to load her organizations with");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Mockito.verify(gh, Mockito.never()).getMyOrganizations();
+    }
+
+    @Test
+    public void testProbeAgreesWithTheListingOnPublicRepositories() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v3/repos/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean collaborator = exchange.getRequestURI().getPath()
+                        .equals("/api/v3/repos/acme/widget/collaborators/bob");
+                exchange.sendResponseHeaders(collaborator ? 204 : 404, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String githubServer = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v3";
+            GHMyself me = mockGHMyselfAs("bob");
+            GitHub gh = GitHubBuilder.fromEnvironment().build();
+            PowerMockito.when(GitHubBuilder.fromEnvironment().withEndpoint(githubServer))
+                    .thenReturn(GitHubBuilder.fromEnvironment());
+            PowerMockito.when(gh.getMyOrganizations()).thenReturn(new HashMap<String, GHOrganization>());
+            PowerMockito.when(me.getAllOrganizations()).thenReturn(new GHPersonSet<GHOrganization>());
+            // bob can only pull acme/widget, and is no collaborator of acme/gadget
+            GHRepository widget = mockPublicRepository(gh, "acme", "widget");
+            mockPublicRepository(gh, "acme", "gadget");
+            PagedIterable<GHRepository> repositories = PowerMockito.mock(PagedIterable.class);
+            PowerMockito.when(me.listRepositories()).thenReturn(repositories);
+            PowerMockito.when(repositories.asList()).thenReturn(Collections.singletonList(widget));
+
+            GithubAuthenticationToken authenticationToken = new GithubAuthenticationToken("accessToken", githubServer);
+            for (String repositoryName : Arrays.asList("acme/widget", "acme/gadget")) {
+                assertEquals(repositoryName, authenticationToken.hasRepositoryPermission(repositoryName),
+                        authenticationToken.probeRepositoryPermission(repositoryName));
+            }
+            assertTrue(authenticationToken.probeRepositoryPermission("acme/widget"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testGraphqlAndMemberListsGrantTheSameGroups() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/graphql", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // alice is in Core of whatever organization is asked about
+                byte[] response = ("{\"data\": {"
+                        + "\"o0\": {\"teams\": {\"nodes\": [{\"name\": \"Core\"}], \"pageInfo\": {\"hasNextPage\": false}}},"
+                        + "\"o1\": {\"teams\": {\"nodes\": [{\"name\": \"Core\"}], \"pageInfo\": {\"hasNextPage\": false}}}"
+                        + "}}").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            GHMyself me = mockGHMyselfAs("bob");
+            GHUser alice = PowerMockito.mock(GHUser.class);
+            PowerMockito.when(alice.getLogin()).thenReturn("alice");
+            // bob belongs to acme but not to sso, so the teams of sso are not his to look at
+            GHOrganization acme = mockOrganizationWithTeam("acme", alice);
+            GHOrganization sso = mockOrganizationWithTeam("sso", alice);
+            PowerMockito.when(alice.getOrganizations()).thenReturn(new GHPersonSet<GHOrganization>(acme, sso));
+            PowerMockito.when(me.isMemberOf(acme)).thenReturn(true);
+            PowerMockito.when(me.isMemberOf(sso)).thenReturn(false);
+
+            Map<String, Set<String>> groups = new HashMap<String, Set<String>>();
+            for (String githubServer : Arrays.asList("/api/v3", "/missing/api/v3")) {
+                githubServer = "http://127.0.0.1:" + server.getAddress().getPort() + githubServer;
+                PowerMockito.when(GitHubBuilder.fromEnvironment().withEndpoint(githubServer))
+                        .thenReturn(GitHubBuilder.fromEnvironment());
+                GithubAuthenticationToken authenticationToken = new GithubAuthenticationToken("accessToken", githubServer);
+                Set<String> names = new TreeSet<String>();
+                for (GrantedAuthority authority : authenticationToken.getGrantedAuthorities(alice)) {
+                    names.add(authority.getAuthority());
+                }
+                groups.put(githubServer, names);
+                GithubAuthenticationToken.clearCaches();
+            }
+            assertEquals(2, groups.size());
+            for (Set<String> names : groups.values()) {
+                assertEquals(new TreeSet<String>(Arrays.asList("acme", "acme*Core", "sso")), names);
+            }
+        } finally {
+            server.stop(0);
+            GithubGraphQL.clear();
+        }
+    }
+
+    private GHOrganization mockOrganizationWithTeam(String login, GHUser member) throws IOException {
+        GHOrganization organization = PowerMockito.mock(GHOrganization.class);
+        PowerMockito.when(organization.getLogin()).thenReturn(login);
+        GHTeam team = PowerMockito.mock(GHTeam.class);
+        PowerMockito.when(team.getName()).thenReturn("Core");
+        PowerMockito.when(team.getMembers()).thenReturn(Collections.singleton(member));
+        PowerMockito.when(organization.getTeams()).thenReturn(Collections.singletonMap("Core", team));
+        return organization;
+    }
+
+    private GHRepository mockPublicRepository(GitHub gh, String owner, String name) throws IOException {
+        GHRepository repository = PowerMockito.mock(GHRepository.class);
+        GHUser ghOwner = PowerMockito.mock(GHUser.class);
+        PowerMockito.when(ghOwner.getLogin()).thenReturn(owner);
+        PowerMockito.when(repository.getOwner()).thenReturn(ghOwner);
+        PowerMockito.when(repository.getName()).thenReturn(name);
+        PowerMockito.when(repository.isPrivate()).thenReturn(false);
+        PowerMockito.when(repository.hasPullAccess()).thenReturn(true);
+        PowerMockito.when(gh.getRepository(owner + "/" + name)).thenReturn(repository);
+        return repository;
+    }
+
     @After
     public void after() {
         GithubAuthenticationToken.clearCaches();
@@ -62,7 +210,8 @@ public class GithubAuthenticationTokenTest {
         PowerMockito.when(GitHubBuilder.fromEnvironment()).thenReturn(builder);
         PowerMockito.when(builder.withEndpoint("https://api.github.com")).thenReturn(builder);
         PowerMockito.when(builder.withOAuthToken("accessToken")).thenReturn(builder);
-        PowerMockito.when(builder.withRateLimitHandler(RateLimitHandler.FAIL)).thenReturn(builder);
+        PowerMockito.when(builder.withConnector(Mockito.any(HttpConnector.class))).thenReturn(builder);
+        PowerMockito.when(builder.withRateLimitHandler(Mockito.any(RateLimitHandler.class))).thenReturn(builder);
         PowerMockito.when(builder.build()).thenReturn(gh);
         GHMyself me = PowerMockito.mock(GHMyself.class);
         PowerMockito.when(gh.getMyself()).thenReturn(me);
@@ -24,10 +24,21 @@ THE SOFTWARE.
 
 package org.jenkinsci.plugins;
 
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Project;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.security.ACL;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import junit.framework.TestCase;
 import org.junit.runner.RunWith;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class GithubAuthorizationStrategyTest extends TestCase {
     @Test
@@ -43,4 +54,63 @@ public class GithubAuthorizationStrategyTest extends TestCase {
         assertFalse(a.equals(b));
         assertFalse(a.equals(""));
     }
+    @Test
+    public void testJobACLIsReused() {
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg", false, false, false, false);
+        Project project = Mockito.mock(Project.class);
+        assertSame(strategy.getACL(project), strategy.getACL(project));
+    }
+    @Test
+    public void testDeletedJobACLIsDropped() {
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg", false, false, false, false);
+        Project project = Mockito.mock(Project.class);
+        ACL acl = strategy.getACL(project);
+        strategy.jobDeleted(project);
+        assertNotSame(acl, strategy.getACL(project));
+    }
+    @Test
+    public void testJobACLDoesNotKeepTheJobInMemory() throws InterruptedException {
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg", false, false, false, false);
+        Project project = Mockito.mock(Project.class);
+        ACL acl = strategy.getACL(project);
+        WeakReference<Project> job = new WeakReference<Project>(project);
+        project = null;
+        for (int i = 0; i < 100 && job.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(job.get());
+        assertNotNull(acl);
+    }
+    @Test
+    public void testFilterJobsDecidesOncePerRepository() {
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg", false, false, false, false);
+        Project widget = mockProject("https://github.com/acme/widget.git");
+        Project gadget = mockProject("https://github.com/acme/gadget.git");
+        Project widgetRelease = mockProject("git@github.com:acme/widget.git");
+        GithubAuthenticationToken authenticationToken = Mockito.mock(GithubAuthenticationToken.class);
+        Mockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        Mockito.when(authenticationToken.getName()).thenReturn("Me");
+        Mockito.when(authenticationToken.hasRepositoryPermission("acme/widget")).thenReturn(true);
+
+        List<Job<?, ?>> jobs = Arrays.<Job<?, ?>>asList(widget, gadget, widgetRelease);
+        assertEquals(Arrays.<Job<?, ?>>asList(widget, widgetRelease),
+                strategy.filterJobs(authenticationToken, Item.READ, jobs));
+        Mockito.verify(authenticationToken).prefetchRepositories(Arrays.asList("acme/widget", "acme/gadget"), true, false);
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasRepositoryPermission("acme/widget");
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasRepositoryPermission("acme/gadget");
+
+        // the decisions are remembered for the checks made one job at a time
+        assertTrue(strategy.getACL(widgetRelease).hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasRepositoryPermission("acme/widget");
+    }
+    private Project mockProject(String url) {
+        GitSCM scm = Mockito.mock(GitSCM.class);
+        UserRemoteConfig userRemoteConfig = Mockito.mock(UserRemoteConfig.class);
+        Mockito.when(userRemoteConfig.getUrl()).thenReturn(url);
+        Mockito.when(scm.getUserRemoteConfigs()).thenReturn(Collections.singletonList(userRemoteConfig));
+        Project project = Mockito.mock(Project.class);
+        Mockito.when(project.getScm()).thenReturn(scm);
+        return project;
+    }
 }
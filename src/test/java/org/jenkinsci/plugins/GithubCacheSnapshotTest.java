@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GithubCacheSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+
+    @After
+    public void clear() {
+        caches.invalidateAll();
+    }
+
+    @Test
+    public void testEntriesAreRestoredWithTheirLoadTime() throws IOException {
+        Set<String> orgs = new HashSet<String>(Arrays.asList("org1", "org2"));
+        caches.userOrganizationCache.put("bob", orgs);
+        caches.loaded(GithubCacheSpec.ORGANIZATIONS, "bob");
+        long loadTime = caches.loadTimes(GithubCacheSpec.ORGANIZATIONS).get("bob");
+        caches.repositoriesByUserCache.put("bob", caches.repositoryNames().copyOf(Arrays.asList("org1/repo")));
+        caches.loaded(GithubCacheSpec.REPOSITORIES, "bob");
+        File file = new File(folder.getRoot(), "snapshot.bin");
+
+        GithubCacheSnapshot.write(caches, file);
+        caches.invalidateAll();
+
+        assertEquals(2, GithubCacheSnapshot.read(caches, file));
+        assertEquals(orgs, caches.userOrganizationCache.getIfPresent("bob"));
+        assertTrue(caches.repositoriesByUserCache.getIfPresent("bob").contains("org1/repo"));
+        assertEquals(loadTime, (long) caches.loadTimes(GithubCacheSpec.ORGANIZATIONS).get("bob"));
+    }
+
+    @Test
+    public void testEntriesWithoutLoadTimeAreNotSaved() throws IOException {
+        caches.teamMembersCache.put("org*team", new HashSet<String>(Arrays.asList("bob")));
+        File file = new File(folder.getRoot(), "snapshot.bin");
+
+        GithubCacheSnapshot.write(caches, file);
+        caches.invalidateAll();
+
+        assertEquals(0, GithubCacheSnapshot.read(caches, file));
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotRestored() {
+        long old = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        assertFalse(caches.restore(GithubCacheSpec.ORGANIZATIONS, "bob", new HashSet<String>(), old));
+        assertNull(caches.userOrganizationCache.getIfPresent("bob"));
+    }
+
+    @Test
+    public void testRestoredEntriesExpireAtTheirOriginalAge() {
+        long almostExpired = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1) + 100;
+        assertTrue(caches.restore(GithubCacheSpec.ORGANIZATIONS, "bob", new HashSet<String>(), almostExpired));
+        caches.expireRestored();
+        assertTrue(caches.userOrganizationCache.asMap().containsKey("bob"));
+
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        caches.expireRestored();
+        assertFalse(caches.userOrganizationCache.asMap().containsKey("bob"));
+    }
+}
@@ -0,0 +1,52 @@
+package org.jenkinsci.plugins;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class GithubCacheSpecTest {
+
+    @Test
+    public void testDefaults() {
+        GithubCacheSpec spec = GithubCacheSpec.parse(null);
+        assertEquals(TimeUnit.HOURS.toSeconds(1), spec.get(GithubCacheSpec.REPOSITORIES).expireAfterWriteSeconds);
+        assertEquals(-1, spec.get(GithubCacheSpec.REPOSITORIES).maximumSize);
+        assertEquals(GithubCacheSpec.DEFAULT_MAXIMUM_SIZE, spec.get(GithubCacheSpec.USERS).maximumSize);
+        assertEquals(GithubCacheSpec.DEFAULT, spec);
+    }
+
+    @Test
+    public void testParse() {
+        GithubCacheSpec spec = GithubCacheSpec.parse(
+                "repositories.expireAfterWrite=2h, repositories.maximumWeight=5000\nusers.maximumSize=10");
+        assertEquals(TimeUnit.HOURS.toSeconds(2), spec.get(GithubCacheSpec.REPOSITORIES).expireAfterWriteSeconds);
+        assertEquals(5000, spec.get(GithubCacheSpec.REPOSITORIES).maximumWeight);
+        assertEquals(10, spec.get(GithubCacheSpec.USERS).maximumSize);
+        assertEquals(TimeUnit.HOURS.toSeconds(1), spec.get(GithubCacheSpec.ORGANIZATIONS).expireAfterWriteSeconds);
+        assertNotEquals(GithubCacheSpec.DEFAULT, spec);
+    }
+
+    @Test
+    public void testTeamMembersCanBeBoundedByWeight() {
+        GithubCacheSpec spec = GithubCacheSpec.parse("teamMembers.maximumWeight=100000");
+        assertEquals(100000, spec.get(GithubCacheSpec.TEAM_MEMBERS).maximumWeight);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownCache() {
+        GithubCacheSpec.parse("teams.maximumSize=10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWeightOnlyForNameSets() {
+        GithubCacheSpec.parse("users.maximumWeight=10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDuration() {
+        GithubCacheSpec.parse("organizations.expireAfterWrite=1 hour");
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins;
+
+import hudson.model.Item;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GithubDecisionCacheTest {
+
+    private final Object configuration = new Object();
+
+    @Before
+    public void setUp() {
+        GithubDecisionCache.clear();
+    }
+
+    @Test
+    public void testDecisionIsKeptWithinItsGeneration() {
+        long generation = GithubDecisionCache.generation();
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "acme/widget", true, generation);
+        assertEquals(Boolean.TRUE, GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/widget"));
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.BUILD, "acme/widget"));
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/gadget"));
+        assertNull(GithubDecisionCache.get(configuration, "bob", Item.READ, "acme/widget"));
+        assertNull(GithubDecisionCache.get(new Object(), "alice", Item.READ, "acme/widget"));
+    }
+
+    @Test
+    public void testInvalidateAllDropsEarlierDecisions() {
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "", false, GithubDecisionCache.generation());
+        GithubDecisionCache.invalidateAll();
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, ""));
+    }
+
+    @Test
+    public void testDecisionRacingAnInvalidationIsNotServed() {
+        long generation = GithubDecisionCache.generation();
+        // the caches are invalidated while the decision is being made
+        GithubDecisionCache.invalidateAll();
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "", true, generation);
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, ""));
+    }
+
+    @Test
+    public void testInvalidateUserOnlyDropsTheDecisionsOfThatUser() {
+        long generation = GithubDecisionCache.generation();
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "acme/widget", true, generation);
+        GithubDecisionCache.put(configuration, "bob", Item.READ, "acme/widget", true, generation);
+
+        GithubDecisionCache.invalidateUser("alice");
+
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/widget"));
+        assertEquals(Boolean.TRUE, GithubDecisionCache.get(configuration, "bob", Item.READ, "acme/widget"));
+        // decisions made afterwards are kept again
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "acme/widget", false,
+                GithubDecisionCache.generation());
+        assertEquals(Boolean.FALSE, GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/widget"));
+    }
+
+    @Test
+    public void testInvalidateRepositoryOnlyDropsTheDecisionsOnThatRepository() {
+        long generation = GithubDecisionCache.generation();
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "acme/widget", true, generation);
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "acme/gadget", true, generation);
+
+        GithubDecisionCache.invalidateRepository("acme/widget");
+
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/widget"));
+        assertEquals(Boolean.TRUE, GithubDecisionCache.get(configuration, "alice", Item.READ, "acme/gadget"));
+    }
+
+    @Test
+    public void testDecisionRacingAUserInvalidationIsNotKept() {
+        long generation = GithubDecisionCache.generation();
+        GithubDecisionCache.invalidateUser("alice");
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "", true, generation);
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, ""));
+    }
+
+    @Test
+    public void testCacheChangesOnlyInvalidateTheUsersConcerned() {
+        GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+        long generation = GithubDecisionCache.generation();
+        GithubDecisionCache.put(configuration, "alice", Item.READ, "", true, generation);
+        GithubDecisionCache.put(configuration, "bob", Item.READ, "", true, generation);
+
+        caches.invalidateUserRepositories("alice");
+        caches.userOrganizationCache.put("carol", Collections.singleton("acme"));
+        caches.userOrganizationCache.invalidate("carol");
+
+        assertNull(GithubDecisionCache.get(configuration, "alice", Item.READ, ""));
+        assertEquals(Boolean.TRUE, GithubDecisionCache.get(configuration, "bob", Item.READ, ""));
+    }
+}
@@ -0,0 +1,171 @@
+package org.jenkinsci.plugins;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GithubDirectoryCacheBackendTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+
+    private GithubDirectoryCacheBackend controller1;
+    private GithubDirectoryCacheBackend controller2;
+
+    @Before
+    public void setUp() {
+        controller1 = new GithubDirectoryCacheBackend(folder.getRoot());
+        controller2 = new GithubDirectoryCacheBackend(folder.getRoot());
+    }
+
+    @After
+    public void clear() {
+        GithubCacheBackend.use(null);
+        caches.invalidateAll();
+    }
+
+    @Test
+    public void testDisabledWithoutDirectory() {
+        assertFalse(new GithubDirectoryCacheBackend(null).isEnabled());
+        assertTrue(controller1.isEnabled());
+    }
+
+    @Test
+    public void testEntriesAreShared() throws IOException {
+        Set<String> orgs = new HashSet<String>(Arrays.asList("org1", "org2"));
+        controller1.put(GithubCacheSpec.ORGANIZATIONS, "bob", new GithubCacheBackend.Entry(orgs, 1234L, 5L));
+
+        GithubCacheBackend.Entry entry = controller2.get(GithubCacheSpec.ORGANIZATIONS, "bob");
+        assertEquals(orgs, entry.names);
+        assertEquals(1234L, entry.loadTime);
+        assertEquals(5L, entry.sequence);
+        assertNull(controller2.get(GithubCacheSpec.ORGANIZATIONS, "alice"));
+        assertNull(controller2.get(GithubCacheSpec.TEAM_MEMBERS, "bob"));
+
+        controller2.remove(GithubCacheSpec.ORGANIZATIONS, "bob");
+        assertNull(controller1.get(GithubCacheSpec.ORGANIZATIONS, "bob"));
+    }
+
+    @Test
+    public void testKeysAreEncoded() throws IOException {
+        Set<String> members = Collections.singleton("bob");
+        controller1.put(GithubCacheSpec.TEAM_MEMBERS, "org*team/../x",
+                new GithubCacheBackend.Entry(members, 1L, 0L));
+        assertEquals(members, controller2.get(GithubCacheSpec.TEAM_MEMBERS, "org*team/../x").names);
+    }
+
+    @Test
+    public void testInvalidationsReachOtherControllersOnce() throws IOException {
+        controller1.publish("user\tbob");
+        controller1.publish("team\torg\tteam");
+
+        assertEquals(Arrays.asList("user\tbob", "team\torg\tteam"), controller2.poll());
+        assertTrue(controller2.poll().isEmpty());
+        assertTrue(controller1.poll().isEmpty());
+    }
+
+    @Test
+    public void testInvalidationsAreNumberedAcrossControllers() throws IOException {
+        assertEquals(0, controller1.sequence());
+        controller1.publish("user\tbob");
+        controller2.publish("user\talice");
+        assertEquals(1, controller1.sequence());
+        assertEquals(2, controller2.sequence());
+
+        // a controller which never polled takes its number from the directory
+        GithubDirectoryCacheBackend late = new GithubDirectoryCacheBackend(folder.getRoot());
+        late.publish("user\tcarol");
+        assertEquals(3, late.sequence());
+        assertEquals(Arrays.asList("user\talice", "user\tcarol"), controller1.poll());
+        assertEquals(3, controller1.sequence());
+    }
+
+    @Test
+    public void testCachesReadThroughAndApplyInvalidations() {
+        GithubCacheBackend.use(controller1);
+        Set<String> orgs = new HashSet<String>(Arrays.asList("org1"));
+        caches.loaded(GithubCacheSpec.ORGANIZATIONS, "bob", orgs, caches.startFetch());
+
+        GithubCacheBackend.use(controller2);
+        assertEquals(orgs, caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "bob"));
+        assertNull(caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "alice"));
+
+        caches.userOrganizationCache.put("bob", orgs);
+        caches.invalidateUser("bob");
+        assertNull(caches.userOrganizationCache.getIfPresent("bob"));
+        assertNull(caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "bob"));
+
+        GithubCacheBackend.use(controller1);
+        caches.userOrganizationCache.put("bob", orgs);
+        for (String invalidation : controller1.poll()) {
+            caches.apply(invalidation);
+        }
+        assertNull(caches.userOrganizationCache.getIfPresent("bob"));
+    }
+
+    @Test
+    public void testStaleSharedEntriesAreIgnored() throws IOException {
+        GithubCacheBackend.use(controller1);
+        long old = System.currentTimeMillis() - caches.maximumAgeMillis(GithubCacheSpec.ORGANIZATIONS);
+        controller1.put(GithubCacheSpec.ORGANIZATIONS, "bob",
+                new GithubCacheBackend.Entry(Collections.singleton("org1"), old, 0L));
+        assertNull(caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "bob"));
+    }
+
+    @Test
+    public void testValueFetchedBeforeAnInvalidationIsNotWrittenBack() throws IOException {
+        GithubCacheBackend.use(controller1);
+        Set<String> orgs = Collections.singleton("org1");
+        GithubCaches.Fetch fetchStart = caches.startFetch();
+        caches.invalidateUser("bob");
+
+        caches.loaded(GithubCacheSpec.ORGANIZATIONS, "bob", orgs, fetchStart);
+        assertNull(controller1.get(GithubCacheSpec.ORGANIZATIONS, "bob"));
+        caches.loaded(GithubCacheSpec.ORGANIZATIONS, "bob", orgs, caches.startFetch());
+        assertEquals(orgs, controller1.get(GithubCacheSpec.ORGANIZATIONS, "bob").names);
+    }
+
+    @Test
+    public void testValueFetchedBeforeAnAppliedInvalidationIsIgnored() throws IOException {
+        GithubCacheBackend.use(controller1);
+        Set<String> orgs = Collections.singleton("org1");
+        // the clock of the other controller is behind, which makes no difference
+        long loadTime = System.currentTimeMillis() + 60000;
+        long sequence = controller2.sequence();
+        controller2.publish("user\tbob");
+        for (String invalidation : controller1.poll()) {
+            caches.apply(invalidation);
+        }
+
+        // written back by a controller which was fetching when bob was invalidated
+        controller2.put(GithubCacheSpec.ORGANIZATIONS, "bob", new GithubCacheBackend.Entry(orgs, loadTime, sequence));
+        assertNull(caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "bob"));
+        controller2.put(GithubCacheSpec.ORGANIZATIONS, "bob",
+                new GithubCacheBackend.Entry(orgs, System.currentTimeMillis() - 60000, controller2.sequence()));
+        assertEquals(orgs, caches.loadShared(GithubCacheSpec.ORGANIZATIONS, "bob"));
+    }
+
+    @Test
+    public void testRecentInvalidationsAreKept() {
+        GithubCaches.Fetch fetchStart = caches.startFetch();
+        caches.invalidateUser("bob");
+        caches.expireInvalidations();
+        assertTrue(caches.invalidatedSince(GithubCacheSpec.ORGANIZATIONS, "bob", fetchStart));
+        assertFalse(caches.invalidatedSince(GithubCacheSpec.ORGANIZATIONS, "alice", fetchStart));
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GithubFanOutTest {
+
+    @Test
+    public void testResultsKeepTheOrderOfTheItems() throws IOException {
+        List<String> results = GithubFanOut.map(Arrays.asList(3, 1, 2), new GithubFanOut.Call<Integer, String>() {
+            @Override
+            public String call(Integer item) throws IOException {
+                try {
+                    Thread.sleep(item * 10);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return "org" + item;
+            }
+        });
+        assertEquals(Arrays.asList("org3", "org1", "org2"), results);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testFailureOfOneCallIsRethrown() throws IOException {
+        GithubFanOut.map(Arrays.asList("a", "b", "c"), new GithubFanOut.Call<String, String>() {
+            @Override
+            public String call(String item) throws IOException {
+                if (item.equals("b")) {
+                    throw new FileNotFoundException(item);
+                }
+                return item;
+            }
+        });
+    }
+}
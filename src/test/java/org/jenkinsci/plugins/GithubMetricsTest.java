@@ -0,0 +1,24 @@
+package org.jenkinsci.plugins;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GithubMetricsTest {
+
+    @Test
+    public void testEndpointNamesHideNames() {
+        assertEquals("GET /orgs/{}/repos", GithubMetrics.endpointOf("GET", "/orgs/acme/repos"));
+        assertEquals("GET /teams/{}/members", GithubMetrics.endpointOf("GET", "/teams/42/members"));
+        assertEquals("GET /repos/{}/{}/collaborators/{}",
+                GithubMetrics.endpointOf("GET", "/repos/acme/widget/collaborators/alice"));
+        assertEquals("GET /user/orgs", GithubMetrics.endpointOf("GET", "/user/orgs"));
+    }
+
+    @Test
+    public void testEnterprisePrefixIsRemoved() {
+        assertEquals("GET /users/{}", GithubMetrics.endpointOf("GET", "/api/v3/users/alice"));
+        assertEquals("GET /", GithubMetrics.endpointOf("GET", "/"));
+        assertEquals("POST /graphql", GithubMetrics.endpointOf("POST", "/api/graphql"));
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GithubPublicRepositoriesTest {
+
+    private HttpServer server;
+    private String requestBody;
+    private String authorization;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/graphql", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestBody = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                byte[] response = ("{\"data\": {\"r0\": {\"isPrivate\": false}, \"r1\": {\"isPrivate\": true},"
+                        + " \"r2\": null, \"r3\": null},"
+                        + " \"errors\": [{\"type\": \"NOT_FOUND\", \"path\": [\"r2\"]},"
+                        + " {\"type\": \"FORBIDDEN\", \"path\": [\"r3\"]}]}").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        GithubGraphQL.clear();
+    }
+
+    @Test
+    public void testOnlyDefiniteAnswersAreReturned() throws IOException {
+        String githubServer = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v3";
+        Map<String, Boolean> found = GithubPublicRepositories.lookup(githubServer, "serverToken",
+                Arrays.asList("acme/widget", "acme/secret", "acme/gone", "sso/restricted"));
+
+        Map<String, Boolean> expected = new HashMap<String, Boolean>();
+        expected.put("acme/widget", true);
+        expected.put("acme/secret", false);
+        expected.put("acme/gone", false);
+        assertEquals(expected, found);
+        assertEquals("token serverToken", authorization);
+        assertTrue(requestBody, requestBody.contains("\"o3\": \"sso\""));
+        assertTrue(requestBody, requestBody.contains("\"n3\": \"restricted\""));
+    }
+
+    @Test
+    public void testGraphqlUri() {
+        assertEquals("https://api.github.com/graphql", GithubGraphQL.uri("https://api.github.com"));
+        assertEquals("https://ghe.example.com/api/graphql",
+                GithubGraphQL.uri("https://ghe.example.com/api/v3/"));
+    }
+}
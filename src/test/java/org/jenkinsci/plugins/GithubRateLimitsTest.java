@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GithubRateLimitsTest {
+
+    private static final GithubRateLimits limits = GithubRateLimits.INSTANCE;
+
+    private static Interceptor.Chain chain(final String accessToken, final int code, final String... headers) {
+        final Request request = new Request.Builder()
+                .url("https://api.github.com/user")
+                .header("Authorization", "token " + accessToken)
+                .build();
+        return new Interceptor.Chain() {
+            @Override
+            public Request request() {
+                return request;
+            }
+
+            @Override
+            public Response proceed(Request request) {
+                Response.Builder response = new Response.Builder()
+                        .request(request)
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(code);
+                for (int i = 0; i < headers.length; i += 2) {
+                    response.header(headers[i], headers[i + 1]);
+                }
+                return response.build();
+            }
+
+            @Override
+            public Connection connection() {
+                return null;
+            }
+        };
+    }
+
+    private static String resetInAnHour() {
+        return String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600);
+    }
+
+    @Test
+    public void testBudgetIsTrackedPerToken() throws IOException {
+        limits.intercept(chain("plenty", 200, "X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "4000", "X-RateLimit-Reset", resetInAnHour()));
+        limits.intercept(chain("scarce", 200, "X-RateLimit-Limit", "5000",
+                "X-RateLimit-Remaining", "40", "X-RateLimit-Reset", resetInAnHour()));
+
+        assertEquals(4000, limits.getBudget("plenty").remaining);
+        assertFalse(limits.isLow("plenty"));
+        assertEquals(0, limits.holdBackMillis("plenty"));
+        assertTrue(limits.isLow("scarce"));
+        assertTrue(limits.holdBackMillis("scarce") > TimeUnit.MINUTES.toMillis(59));
+        assertFalse(limits.isLow("unknown"));
+    }
+
+    @Test
+    public void testRequestsFailFastDuringALongSecondaryRateLimit() throws IOException {
+        limits.intercept(chain("abused", 403, "Retry-After", "60"));
+        assertTrue(limits.isLow("abused"));
+        try {
+            limits.intercept(chain("abused", 200));
+            fail("expected the request to be refused");
+        } catch (IOException expected) {
+            // GitHub asked to wait longer than requests may
+        }
+    }
+
+    @Test
+    public void testRequestsWaitForAShortSecondaryRateLimit() throws IOException {
+        limits.intercept(chain("briefly-abused", 429, "Retry-After", "0"));
+        assertEquals(200, limits.intercept(chain("briefly-abused", 200)).code());
+    }
+
+    @Test
+    public void testWaitsHappenBeforeAConnectionIsTaken() {
+        assertTrue(GithubHttpConnector.get().getClient().interceptors().contains(limits));
+        assertFalse(GithubHttpConnector.get().getClient().networkInterceptors().contains(limits));
+    }
+}
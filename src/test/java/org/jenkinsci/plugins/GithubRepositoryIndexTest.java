@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins;
+
+import hudson.Plugin;
+import hudson.model.Job;
+import hudson.model.Project;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.jenkinsci.plugins.workflow.cps.CpsScmFlowDefinition;
+import org.jenkinsci.plugins.workflow.flow.FlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Jenkins.class, WorkflowJob.class})
+public class GithubRepositoryIndexTest {
+
+    @After
+    public void tearDown() {
+        GithubRepositoryIndex.clear();
+    }
+
+    private Project mockProject(GitSCM scm) {
+        Project project = PowerMockito.mock(Project.class);
+        PowerMockito.when(project.getScm()).thenReturn(scm);
+        return project;
+    }
+
+    private GitSCM mockScm(String url) {
+        GitSCM scm = PowerMockito.mock(GitSCM.class);
+        UserRemoteConfig userRemoteConfig = PowerMockito.mock(UserRemoteConfig.class);
+        PowerMockito.when(userRemoteConfig.getUrl()).thenReturn(url);
+        PowerMockito.when(scm.getUserRemoteConfigs()).thenReturn(Collections.singletonList(userRemoteConfig));
+        return scm;
+    }
+
+    @Test
+    public void testRepositoryIsResolvedOnce() {
+        Project project = mockProject(mockScm("git@github.com:acme/widget.git"));
+
+        assertEquals("acme/widget", GithubRepositoryIndex.repositoryOf(project));
+        assertEquals("acme/widget", GithubRepositoryIndex.repositoryOf(project));
+        Mockito.verify(project, Mockito.times(1)).getScm();
+    }
+
+    @Test
+    public void testJobsWithoutRepository() {
+        Project project = mockProject(mockScm("/var/lib/git/local.git"));
+
+        assertNull(GithubRepositoryIndex.repositoryOf(project));
+        assertNull(GithubRepositoryIndex.repositoryOf(project));
+        Mockito.verify(project, Mockito.times(1)).getScm();
+    }
+
+    @Test
+    public void testRepositoryIsResolvedAgainAfterAChange() {
+        GitSCM before = mockScm("https://github.com/acme/widget.git");
+        GitSCM after = mockScm("https://github.com/acme/gadget.git");
+        Project project = mockProject(before);
+        assertEquals("acme/widget", GithubRepositoryIndex.repositoryOf(project));
+
+        PowerMockito.when(project.getScm()).thenReturn(after);
+        new GithubRepositoryIndex.SaveableListenerImpl().onChange(project, null);
+
+        assertEquals("acme/gadget", GithubRepositoryIndex.repositoryOf(project));
+    }
+
+    @Test
+    public void testPipelineJobRepositoryIsKnownBeforeItsFirstBuild() {
+        mockPlugins("workflow-job", "workflow-cps");
+        WorkflowJob job = PowerMockito.mock(WorkflowJob.class);
+        PowerMockito.when(job.getDefinition())
+                .thenReturn(new CpsScmFlowDefinition(mockScm("https://github.com/acme/pipeline.git"), "Jenkinsfile"));
+        PowerMockito.when(job.getLastBuild()).thenReturn(null);
+
+        assertEquals("acme/pipeline", GithubRepositoryIndex.repositoryOf(job));
+    }
+
+    @Test
+    public void testRepositoriesCheckedOutByBuildsAreIgnored() {
+        mockPlugins("workflow-job", "workflow-cps");
+        // the script of this job checks acme/private out, which says nothing about who may see the job
+        Job job = Mockito.mock(Job.class, Mockito.withSettings().extraInterfaces(SCMTriggerItem.class));
+        Mockito.doReturn(Collections.singletonList(mockScm("https://github.com/acme/private.git")))
+                .when((SCMTriggerItem) job).getSCMs();
+        WorkflowJob inline = PowerMockito.mock(WorkflowJob.class);
+        PowerMockito.when(inline.getDefinition()).thenReturn(PowerMockito.mock(FlowDefinition.class));
+
+        assertNull(GithubRepositoryIndex.repositoryOf(job));
+        assertNull(GithubRepositoryIndex.repositoryOf(inline));
+    }
+
+    private void mockPlugins(String... shortNames) {
+        Jenkins jenkins = PowerMockito.mock(Jenkins.class);
+        PowerMockito.mockStatic(Jenkins.class);
+        PowerMockito.when(Jenkins.getInstance()).thenReturn(jenkins);
+        for (String shortName : shortNames) {
+            PowerMockito.when(jenkins.getPlugin(shortName)).thenReturn(PowerMockito.mock(Plugin.class));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GithubRepositorySetTest {
+
+    private final GithubRepositorySet.Dictionary dictionary = new GithubRepositorySet.Dictionary();
+
+    @Test
+    public void testBehavesLikeTheSetItWasCopiedFrom() {
+        Set<String> names = new HashSet<String>(Arrays.asList("org/b", "org/a", "me/repo"));
+        GithubRepositorySet set = dictionary.copyOf(names);
+
+        assertEquals(names, set);
+        assertEquals(names.hashCode(), set.hashCode());
+        assertEquals(3, set.size());
+        assertTrue(set.contains("org/a"));
+        assertFalse(set.contains("org/c"));
+        assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void testDuplicatesAreDropped() {
+        GithubRepositorySet set = dictionary.copyOf(Arrays.asList("org/a", "org/a", "org/b"));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testNamesAreSharedBetweenSets() {
+        String first = new String("shared/repo");
+        String second = new String("shared/repo");
+        dictionary.copyOf(Arrays.asList(first));
+
+        assertSame(dictionary.intern(first), dictionary.intern(second));
+        assertSame(dictionary.intern(first),
+                dictionary.copyOf(Arrays.asList(second)).iterator().next());
+    }
+
+    @Test
+    public void testDictionaryGrows() {
+        Set<String> names = new HashSet<String>();
+        for (int i = 0; i < 5000; i++) {
+            names.add("grow/repo" + i);
+        }
+        assertEquals(names, dictionary.copyOf(names));
+    }
+
+    @Test
+    public void testSetsOfDifferentDictionariesAreEqual() {
+        GithubRepositorySet set = dictionary.copyOf(Arrays.asList("org/a", "org/b"));
+        GithubRepositorySet other = new GithubRepositorySet.Dictionary().copyOf(Arrays.asList("org/b", "org/a"));
+        assertEquals(set, other);
+        assertTrue(other.contains("org/a"));
+    }
+
+    @Test
+    public void testInvalidateAllStartsANewDictionary() {
+        GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+        GithubRepositorySet set = caches.repositoryNames().copyOf(Arrays.asList("gone/repo"));
+        assertEquals(1, caches.repositoryNames().size());
+
+        caches.invalidateAll();
+
+        assertEquals(0, caches.repositoryNames().size());
+        assertTrue(set.contains("gone/repo"));
+    }
+
+    @Test
+    public void testSetMovedToAnotherDictionaryKeepsItsNames() {
+        GithubRepositorySet set = dictionary.copyOf(Arrays.asList("org/b", "org/a"));
+        GithubRepositorySet.Dictionary other = new GithubRepositorySet.Dictionary();
+        other.copyOf(Arrays.asList("org/c"));
+
+        set.moveTo(other);
+
+        assertEquals(new HashSet<String>(Arrays.asList("org/a", "org/b")), set);
+        assertTrue(set.contains("org/a"));
+        assertFalse(set.contains("org/c"));
+        assertEquals(3, other.size());
+    }
+
+    @Test
+    public void testCompactingForgetsTheNamesOfDroppedSets() {
+        GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+        try {
+            Set<String> kept = caches.repositoryNames().copyOf(Arrays.asList("acme/kept", "acme/both"));
+            caches.repositoriesByUserCache.put("bob", kept);
+            caches.repositoriesByUserCache.put("alice",
+                    caches.repositoryNames().copyOf(Arrays.asList("acme/gone", "acme/both")));
+            caches.repositoriesByUserCache.invalidate("alice");
+
+            caches.compactRepositoryNames();
+
+            assertEquals(2, caches.repositoryNames().size());
+            assertEquals(new HashSet<String>(Arrays.asList("acme/kept", "acme/both")), kept);
+            assertTrue(kept.contains("acme/kept"));
+        } finally {
+            caches.invalidateAll();
+        }
+    }
+}
@@ -29,6 +29,8 @@ package org.jenkinsci.plugins;
 import com.google.common.collect.ImmutableMap;
 import hudson.model.Hudson;
 import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
 import hudson.model.Messages;
 import hudson.model.Project;
 import hudson.plugins.git.GitSCM;
@@ -53,9 +55,16 @@ import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
 import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
 import org.kohsuke.github.RateLimitHandler;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -63,8 +72,11 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -74,7 +86,7 @@ import java.util.Set;
  * @author alex
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({GitHub.class, GitHubBuilder.class, Jenkins.class, GithubSecurityRealm.class})
+@PrepareForTest({GitHub.class, GitHubBuilder.class, Jenkins.class, GithubSecurityRealm.class, PagedIterable.class, Stapler.class})
 public class GithubRequireOrganizationMembershipACLTest extends TestCase {
 
     @Mock
@@ -129,7 +141,8 @@ public class GithubRequireOrganizationMembershipACLTest extends TestCase {
         PowerMockito.when(GitHubBuilder.fromEnvironment()).thenReturn(builder);
         PowerMockito.when(builder.withEndpoint("https://api.github.com")).thenReturn(builder);
         PowerMockito.when(builder.withOAuthToken("accessToken")).thenReturn(builder);
-        PowerMockito.when(builder.withRateLimitHandler(RateLimitHandler.FAIL)).thenReturn(builder);
+        PowerMockito.when(builder.withConnector(Mockito.any(HttpConnector.class))).thenReturn(builder);
+        PowerMockito.when(builder.withRateLimitHandler(Mockito.any(RateLimitHandler.class))).thenReturn(builder);
         PowerMockito.when(builder.build()).thenReturn(gh);
         GHMyself me = PowerMockito.mock(GHMyself.class);
         PowerMockito.when(gh.getMyself()).thenReturn((GHMyself) me);
@@ -138,12 +151,36 @@ public class GithubRequireOrganizationMembershipACLTest extends TestCase {
     }
 
     private void mockReposFor(GHPerson person, List<String> repositoryNames) throws IOException {
-        List<GHRepository> repositories = repositoryListOf(repositoryNames);
+        final List<GHRepository> repositories = repositoryListOf(repositoryNames);
         PagedIterable<GHRepository> pagedRepositories = PowerMockito.mock(PagedIterable.class);
         PowerMockito.when(person.listRepositories()).thenReturn(pagedRepositories);
         PowerMockito.when(pagedRepositories.asList()).thenReturn(repositories);
+        PowerMockito.when(pagedRepositories.iterator()).thenAnswer(new Answer<PagedIterator<GHRepository>>() {
+            @Override
+            public PagedIterator<GHRepository> answer(InvocationOnMock invocation) {
+                return pagedIteratorOf(repositories);
+            }
+        });
     };
 
+    private PagedIterator<GHRepository> pagedIteratorOf(List<GHRepository> repositories) {
+        final Iterator<GHRepository> iterator = repositories.iterator();
+        PagedIterator<GHRepository> pagedIterator = PowerMockito.mock(PagedIterator.class);
+        PowerMockito.when(pagedIterator.hasNext()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return iterator.hasNext();
+            }
+        });
+        PowerMockito.when(pagedIterator.next()).thenAnswer(new Answer<GHRepository>() {
+            @Override
+            public GHRepository answer(InvocationOnMock invocation) {
+                return iterator.next();
+            }
+        });
+        return pagedIterator;
+    }
+
     private void mockOrgRepos(GHMyself me, Map<String, List<String>> orgsAndRepoNames) throws IOException {
         Set<GHOrganization> organizations = new HashSet();
         Set<String> organizationNames = orgsAndRepoNames.keySet();
@@ -176,6 +213,7 @@ public class GithubRequireOrganizationMembershipACLTest extends TestCase {
 
     private GHOrganization mockGHOrganization(String organizationName, List<String> repositories) throws IOException {
         GHOrganization ghOrganization = PowerMockito.mock(GHOrganization.class);
+        PowerMockito.when(ghOrganization.getLogin()).thenReturn(organizationName);
         mockReposFor(ghOrganization, repositories);
         return ghOrganization;
     }
@@ -232,6 +270,20 @@ public class GithubRequireOrganizationMembershipACLTest extends TestCase {
         assertTrue(acl.hasPermission(authenticationToken, Item.BUILD));
     }
 
+    @Test
+    public void testOrgRepositoryIsFoundWithoutListingMyRepositories() throws IOException {
+        GHMyself me = mockGHMyselfAs("Me");
+        mockReposFor(me, Arrays.asList("me/a-repo"));
+        mockOrgRepos(me, ImmutableMap.of("some-org", Arrays.asList("some-org/a-private-repo")));
+        Project mockProject = mockProject("https://github.com/some-org/a-private-repo.git");
+        GithubRequireOrganizationMembershipACL acl = aclForProject(mockProject);
+
+        GithubAuthenticationToken authenticationToken = new GithubAuthenticationToken("accessToken", "https://api.github.com");
+
+        assertTrue(acl.hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(me, Mockito.never()).listRepositories();
+    }
+
     @Test
     public void testCanNotReadOrBuildRepositoryIDoNotCollaborateOn() throws IOException {
         GHMyself me = mockGHMyselfAs("Me");
@@ -419,4 +471,182 @@ public class GithubRequireOrganizationMembershipACLTest extends TestCase {
         assertFalse(acl.hasPermission(ANONYMOUS_USER, VIEW_JOBSTATUS_PERMISSION));
     }
 
+
+    @Test
+    public void testPermissionKinds() {
+        assertEquals(GithubRequireOrganizationMembershipACL.kindOf(Hudson.READ),
+                GithubRequireOrganizationMembershipACL.kindOf(Item.WORKSPACE));
+        assertTrue(GithubRequireOrganizationMembershipACL.kindOf(Item.READ)
+                != GithubRequireOrganizationMembershipACL.kindOf(Item.CONFIGURE));
+        assertEquals(GithubRequireOrganizationMembershipACL.kindOf(Item.BUILD),
+                GithubRequireOrganizationMembershipACL.kindOf(Item.BUILD));
+        assertEquals(GithubRequireOrganizationMembershipACL.kindOf(VIEW_JOBSTATUS_PERMISSION),
+                GithubRequireOrganizationMembershipACL.kindOf(new Permission(Item.PERMISSIONS, "ViewStatus",
+                        Messages._Item_READ_description(), Permission.READ, PermissionScope.ITEM)));
+        assertEquals(0, GithubRequireOrganizationMembershipACL.kindOf(Hudson.ADMINISTER));
+        assertEquals(0, GithubRequireOrganizationMembershipACL.kindOf(Item.CANCEL));
+    }
+
+    @Test
+    public void testOrganizationMembershipOnlyCheckedForReadAndBuild() {
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        PowerMockito.when(authenticationToken.hasOrganizationPermission("Me", "myOrg")).thenReturn(true);
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, false, false, false, false, false, false);
+
+        assertFalse(acl.hasPermission(authenticationToken, Item.CONFIGURE));
+        Mockito.verify(authenticationToken, Mockito.never()).hasOrganizationPermission("Me", "myOrg");
+        assertTrue(acl.hasPermission(authenticationToken, Item.BUILD));
+    }
+
+    private StaplerRequest mockCurrentRequest(String uri) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        StaplerRequest request = PowerMockito.mock(StaplerRequest.class);
+        PowerMockito.when(request.getOriginalRequestURI()).thenReturn(uri);
+        PowerMockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+        PowerMockito.mockStatic(Stapler.class);
+        PowerMockito.when(Stapler.getCurrentRequest()).thenReturn(request);
+        return request;
+    }
+
+    @Test
+    public void testDecisionsAreMadeOncePerRequest() {
+        mockCurrentRequest("/jenkins/job/widget/");
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        PowerMockito.when(authenticationToken.hasOrganizationPermission("Me", "myOrg")).thenReturn(true);
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, false, false, false, false, false, false);
+
+        assertTrue(acl.hasPermission(authenticationToken, Item.BUILD));
+        assertTrue(acl.hasPermission(authenticationToken, Item.BUILD));
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasOrganizationPermission("Me", "myOrg");
+    }
+
+    @Test
+    public void testDecisionsAreSharedAcrossRequestsUntilInvalidated() {
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        PowerMockito.when(authenticationToken.hasOrganizationPermission("Me", "myOrg")).thenReturn(true);
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, false, false, false, false, false, false);
+
+        assertTrue(acl.hasPermission(authenticationToken, Item.BUILD));
+        assertTrue(acl.cloneForJob(null).hasPermission(authenticationToken, Item.BUILD));
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasOrganizationPermission("Me", "myOrg");
+
+        GithubAuthenticationToken.clearCaches();
+        PowerMockito.when(authenticationToken.hasOrganizationPermission("Me", "myOrg")).thenReturn(false);
+        assertFalse(acl.hasPermission(authenticationToken, Item.BUILD));
+    }
+
+    @Test
+    public void testWebhookRequestIsRecognizedOnce() {
+        mockCurrentRequest("/jenkins/github-webhook/");
+        PowerMockito.when(jenkins.getRootUrl()).thenReturn("https://jenkins.example.com/jenkins/");
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, false, false, true, false, false, false);
+
+        assertTrue(acl.hasPermission(ANONYMOUS_USER, Hudson.READ));
+        assertTrue(acl.hasPermission(ANONYMOUS_USER, Item.READ));
+        Mockito.verify(jenkins, Mockito.times(1)).getRootUrl();
+    }
+
+    private GithubAuthenticationToken mockListingOf(Project... projects) {
+        ItemGroup parent = PowerMockito.mock(ItemGroup.class);
+        Mockito.doReturn(Arrays.asList(projects)).when(parent).getItems();
+        for (Project project : projects) {
+            Mockito.doReturn(parent).when(project).getParent();
+        }
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        PowerMockito.when(authenticationToken.hasRepositoryPermission("acme/widget")).thenReturn(true);
+        return authenticationToken;
+    }
+
+    @Test
+    public void testJobsOfAListingAreDecidedTogether() {
+        mockCurrentRequest("/jenkins/view/all/");
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg",
+                false, false, false, false);
+        PowerMockito.when(jenkins.getAuthorizationStrategy()).thenReturn(strategy);
+        Project widget = mockProject("https://github.com/acme/widget.git");
+        Project gadget = mockProject("https://github.com/acme/gadget.git");
+        GithubAuthenticationToken authenticationToken = mockListingOf(widget, gadget);
+
+        assertTrue(strategy.getACL(widget).hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken).prefetchRepositories(Arrays.asList("acme/widget", "acme/gadget"),
+                true, false);
+        assertFalse(strategy.getACL(gadget).hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasRepositoryPermission("acme/widget");
+        Mockito.verify(authenticationToken, Mockito.times(1)).hasRepositoryPermission("acme/gadget");
+    }
+
+    @Test
+    public void testJobPageOnlyDecidesItsJob() {
+        StaplerRequest request = mockCurrentRequest("/jenkins/job/widget/");
+        GithubAuthorizationStrategy strategy = new GithubAuthorizationStrategy("admin", false, true, false, "myOrg",
+                false, false, false, false);
+        PowerMockito.when(jenkins.getAuthorizationStrategy()).thenReturn(strategy);
+        Project widget = mockProject("https://github.com/acme/widget.git");
+        Project gadget = mockProject("https://github.com/acme/gadget.git");
+        GithubAuthenticationToken authenticationToken = mockListingOf(widget, gadget);
+        PowerMockito.when(request.findAncestorObject(Job.class)).thenReturn(widget);
+
+        assertTrue(strategy.getACL(widget).hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken, Mockito.never()).prefetchRepositories(
+                Mockito.<Collection<String>>any(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(authenticationToken, Mockito.never()).hasRepositoryPermission("acme/gadget");
+    }
+
+    @Test
+    public void testReadDeniedBecauseTheLookupFailedIsNotShared() {
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        // GitHub could not tell whether the repository is public
+        PowerMockito.when(authenticationToken.publicRepository("acme/widget")).thenReturn(null);
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, true, false, false, false, false, false)
+                .cloneForProject(mockProject("https://github.com/acme/widget.git"));
+
+        assertFalse(acl.hasPermission(authenticationToken, Item.READ));
+        assertFalse(acl.hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken, Mockito.times(2)).publicRepository("acme/widget");
+
+        PowerMockito.when(authenticationToken.publicRepository("acme/widget")).thenReturn(true);
+        assertTrue(acl.hasPermission(authenticationToken, Item.READ));
+    }
+
+    @Test
+    public void testReadDeniedOnAPrivateRepositoryIsShared() {
+        GithubAuthenticationToken authenticationToken = PowerMockito.mock(GithubAuthenticationToken.class);
+        PowerMockito.when(authenticationToken.isAuthenticated()).thenReturn(true);
+        PowerMockito.when(authenticationToken.getName()).thenReturn("Me");
+        PowerMockito.when(authenticationToken.publicRepository("acme/widget")).thenReturn(false);
+        GithubRequireOrganizationMembershipACL acl = new GithubRequireOrganizationMembershipACL("admin", "myOrg",
+                false, true, false, false, false, false, false)
+                .cloneForProject(mockProject("https://github.com/acme/widget.git"));
+
+        assertFalse(acl.hasPermission(authenticationToken, Item.READ));
+        assertFalse(acl.hasPermission(authenticationToken, Item.READ));
+        Mockito.verify(authenticationToken, Mockito.times(1)).publicRepository("acme/widget");
+    }
 }
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins;
+
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.Request;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GithubResponseCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static GithubResponseCache.Entry entry(String etag, int bodySize) {
+        return new GithubResponseCache.Entry(etag, Headers.of("Content-Type", "application/json"), new byte[bodySize]);
+    }
+
+    @Test
+    public void testStoredEntryCanBeReadBack() throws IOException {
+        GithubResponseCache cache = new GithubResponseCache(folder.getRoot(), 1024 * 1024);
+        cache.put("key", new GithubResponseCache.Entry("\"abc\"",
+                Headers.of("Content-Type", "application/json"), "[]".getBytes("UTF-8")));
+
+        GithubResponseCache.Entry cached = cache.get("key");
+        assertNotNull(cached);
+        assertEquals("\"abc\"", cached.etag);
+        assertEquals("application/json", cached.headers.get("Content-Type"));
+        assertArrayEquals("[]".getBytes("UTF-8"), cached.body);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        GithubResponseCache cache = new GithubResponseCache(folder.getRoot(), 16 * 1024);
+        cache.put("a", entry("a", 900));
+        cache.put("b", entry("b", 900));
+        cache.get("a");
+        for (int i = 0; i < 20; i++) {
+            cache.put("filler" + i, entry("f", 900));
+            cache.get("a");
+        }
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.size() <= 16 * 1024);
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws IOException {
+        File dir = folder.getRoot();
+        new GithubResponseCache(dir, 1024 * 1024).put("key", entry("\"abc\"", 10));
+
+        GithubResponseCache reopened = new GithubResponseCache(dir, 1024 * 1024);
+        assertNotNull(reopened.get("key"));
+    }
+
+    @Test
+    public void testResponsesInOtherMediaTypesAreKeptApart() {
+        Request.Builder request = new Request.Builder().url("https://api.github.com/user/teams")
+                .header("Authorization", "token abc");
+        String json = GithubResponseCache.keyOf(request.header("Accept", "application/vnd.github.v3+json").build());
+        String preview = GithubResponseCache.keyOf(
+                request.header("Accept", "application/vnd.github.hellcat-preview+json").build());
+        assertNotEquals(json, preview);
+        assertEquals(json, GithubResponseCache.keyOf(
+                request.header("Accept", "application/vnd.github.v3+json").build()));
+    }
+}
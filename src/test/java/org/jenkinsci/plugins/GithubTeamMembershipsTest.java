@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GithubTeamMembershipsTest {
+
+    private HttpServer server;
+    private final List<String> requestBodies = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/graphql", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                requestBodies.add(body);
+                String json;
+                if (body.contains("\"a0\": null")) {
+                    json = "{\"data\": {\"o0\": {\"teams\": {\"nodes\": [{\"name\": \"Core\"}, {\"name\": \"Docs\"}],"
+                            + " \"pageInfo\": {\"hasNextPage\": true, \"endCursor\": \"c1\"}}}, \"o1\": null},"
+                            + " \"errors\": [{\"type\": \"FORBIDDEN\", \"path\": [\"o1\"]}]}";
+                } else {
+                    json = "{\"data\": {\"o0\": {\"teams\": {\"nodes\": [{\"name\": \"Ops\"}],"
+                            + " \"pageInfo\": {\"hasNextPage\": false, \"endCursor\": \"c2\"}}}}}";
+                }
+                byte[] response = json.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        GithubGraphQL.clear();
+    }
+
+    @Test
+    public void testTeamsAreFilteredByUserAndPaged() throws IOException {
+        String githubServer = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v3";
+        Map<String, Set<String>> teams = GithubTeamMemberships.lookup(githubServer, "token", "bob",
+                Arrays.asList("acme", "sso"));
+
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("Core", "Docs", "Ops")), teams.get("acme"));
+        assertTrue(teams.get("sso").isEmpty());
+        // one query for both organizations, then one for the second page of the first
+        assertEquals(2, requestBodies.size());
+        assertTrue(requestBodies.get(0), requestBodies.get(0).contains("\"u\": [\"bob\"]"));
+        assertTrue(requestBodies.get(1), requestBodies.get(1).contains("\"a0\": \"c1\""));
+        assertTrue(requestBodies.get(1), requestBodies.get(1).contains("\"o0\": \"acme\""));
+    }
+
+    @Test
+    public void testNoGraphqlApi() throws IOException {
+        String githubServer = "http://127.0.0.1:" + server.getAddress().getPort() + "/missing/api/v3";
+        assertNull(GithubTeamMemberships.lookup(githubServer, "token", "bob", Arrays.asList("acme")));
+    }
+}
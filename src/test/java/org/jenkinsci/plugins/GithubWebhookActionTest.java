@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins;
+
+import net.sf.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GithubWebhookActionTest {
+
+    // the example from GitHub's documentation on validating webhook deliveries
+    private static final String SECRET = "It's a Secret to Everybody";
+    private static final String SIGNATURE = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
+
+    private final GithubCaches caches = GithubCaches.forSpec(GithubCacheSpec.DEFAULT);
+
+    @After
+    public void clear() {
+        caches.invalidateAll();
+    }
+
+    private static byte[] body() throws UnsupportedEncodingException {
+        return "Hello, World!".getBytes("UTF-8");
+    }
+
+    @Test
+    public void testValidSignatureIsAccepted() throws UnsupportedEncodingException {
+        assertTrue(GithubWebhookAction.isSignatureValid(SECRET, body(), SIGNATURE, null));
+    }
+
+    @Test
+    public void testInvalidSignatureIsRejected() throws UnsupportedEncodingException {
+        assertFalse(GithubWebhookAction.isSignatureValid("another secret", body(), SIGNATURE, null));
+        assertFalse(GithubWebhookAction.isSignatureValid(SECRET, body(), SIGNATURE.replace("sha256=", "sha1="), null));
+        assertFalse(GithubWebhookAction.isSignatureValid(SECRET, body(), null, null));
+    }
+
+    @Test
+    public void testMemberRemovedFromOrganizationIsDropped() {
+        caches.userOrganizationCache.put("bob", new HashSet<String>(Arrays.asList("some-org")));
+        caches.userOrganizationCache.put("alice", new HashSet<String>(Arrays.asList("some-org")));
+
+        GithubWebhookAction.handle(caches, "organization", JSONObject.fromObject(
+                "{action: 'member_removed', membership: {user: {login: 'bob'}}, organization: {login: 'some-org'}}"));
+
+        assertNull(caches.userOrganizationCache.getIfPresent("bob"));
+        assertNotNull(caches.userOrganizationCache.getIfPresent("alice"));
+    }
+
+    @Test
+    public void testNewRepositoryDropsRepositoriesOfOrganizationMembers() {
+        caches.userOrganizationCache.put("bob", new HashSet<String>(Arrays.asList("some-org")));
+        caches.userOrganizationCache.put("alice", new HashSet<String>(Arrays.asList("other-org")));
+        caches.repositoriesByUserCache.put("bob", new HashSet<String>(Arrays.asList("some-org/old")));
+        caches.repositoriesByUserCache.put("alice", new HashSet<String>(Arrays.asList("other-org/old")));
+
+        GithubWebhookAction.handle(caches, "repository", JSONObject.fromObject(
+                "{action: 'created', repository: {full_name: 'some-org/new'}, organization: {login: 'some-org'}}"));
+
+        assertNull(caches.repositoriesByUserCache.getIfPresent("bob"));
+        assertNotNull(caches.repositoriesByUserCache.getIfPresent("alice"));
+    }
+
+    @Test
+    public void testRenamedRepositoryOnlyDropsUsersWhoHaveItCached() {
+        caches.userOrganizationCache.put("bob", new HashSet<String>(Arrays.asList("some-org")));
+        caches.userOrganizationCache.put("alice", new HashSet<String>(Arrays.asList("some-org")));
+        caches.repositoriesByUserCache.put("bob", new HashSet<String>(Arrays.asList("some-org/old")));
+        caches.repositoriesByUserCache.put("alice", new HashSet<String>(Arrays.asList("some-org/other")));
+
+        GithubWebhookAction.handle(caches, "repository", JSONObject.fromObject(
+                "{action: 'renamed', repository: {full_name: 'some-org/new'},"
+                + " changes: {repository: {name: {from: 'old'}}}, organization: {login: 'some-org'}}"));
+
+        assertNull(caches.repositoriesByUserCache.getIfPresent("bob"));
+        assertNotNull(caches.repositoriesByUserCache.getIfPresent("alice"));
+    }
+
+    @Test
+    public void testTeamMembershipChangeDropsTheTeam() {
+        caches.teamMembersCache.put("some-org*devs", new HashSet<String>(Arrays.asList("bob")));
+
+        GithubWebhookAction.handle(caches, "membership", JSONObject.fromObject(
+                "{action: 'added', member: {login: 'alice'}, team: {name: 'devs'}, organization: {login: 'some-org'}}"));
+
+        assertNull(caches.teamMembersCache.getIfPresent("some-org*devs"));
+    }
+}